@@ -20,14 +20,57 @@
 package de.frachtwerk.essencium.storage.generic.configuration;
 
 import de.frachtwerk.essencium.storage.generic.model.Providers;
+import de.frachtwerk.essencium.storage.generic.model.WritePolicy;
+import java.time.Duration;
 import java.util.Set;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 @Component
 @ConfigurationProperties("file.storage")
 @Data
 public class FileStorageConfiguration {
   private Set<Providers> usedProviders;
+  // providers an upload has to be stored with before it is reported as stored
+  private WritePolicy writePolicy = WritePolicy.ALL;
+  // directory of the spool files of uploads written to several providers, the system temp dir if
+  // not set
+  private String spoolDirectory;
+
+  // store content that is already stored only once and let the files refer to the same blob
+  private boolean deduplicate = false;
+
+  // only the first used provider is written during the upload, the others are replicated later
+  private boolean writeBehind = false;
+  private Duration replicationInterval = Duration.ofSeconds(5);
+  private int replicationBatchSize = 100;
+  // delay before a failed replica is retried, doubled with every failure up to the maximum
+  private Duration replicationRetryDelay = Duration.ofSeconds(10);
+  private Duration replicationMaxRetryDelay = Duration.ofMinutes(15);
+
+  // read from the replica with the lowest latency instead of the first one stored
+  private boolean latencyAwareReads = true;
+  // weight of a new sample in the moving averages of latency and error rate
+  private double readStatisticsDecay = 0.2;
+  // providers above this error rate are read from last until the probe interval has passed
+  private double readErrorRateThreshold = 0.5;
+  private Duration readProbeInterval = Duration.ofSeconds(30);
+
+  // start reading the next replica if the preferred one has not delivered its first byte in time
+  private boolean hedgedReads = false;
+  // percentile of the first byte latency of a provider after which the next replica is read
+  private double hedgeLatencyPercentile = 0.95;
+  // used until enough latencies of a provider have been recorded
+  private Duration hedgeDefaultDelay = Duration.ofMillis(500);
+  private Duration hedgeMinDelay = Duration.ofMillis(10);
+
+  // let the servlet container send local files with sendfile instead of copying them
+  private boolean sendfile = true;
+
+  // entries of a ZIP download that are fetched ahead of the one being compressed
+  private int zipPrefetchEntries = 4;
+  // bytes of each prefetched entry that are buffered in memory
+  private DataSize zipPrefetchBufferSize = DataSize.ofMegabytes(1);
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.controller;
+
+import de.frachtwerk.essencium.storage.generic.provider.LimitedInputStream;
+import de.frachtwerk.essencium.storage.generic.provider.RangeReadableResource;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Byte range of another {@link Resource}. Only the range is read from a {@link
+ * RangeReadableResource}, other resources are read from the start and the bytes in front of the
+ * range are skipped.
+ */
+class ByteRangeResource extends AbstractResource {
+  private final Resource resource;
+  private final long start;
+  private final long count;
+
+  ByteRangeResource(Resource resource, long start, long count) {
+    this.resource = resource;
+    this.start = start;
+    this.count = count;
+  }
+
+  long getStart() {
+    return start;
+  }
+
+  long getEnd() {
+    return start + count - 1;
+  }
+
+  @Override
+  public boolean exists() {
+    return resource.exists();
+  }
+
+  @Override
+  public long contentLength() {
+    return count;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    if (resource instanceof RangeReadableResource rangeReadable) {
+      return rangeReadable.getInputStream(start, count);
+    }
+    InputStream in = resource.getInputStream();
+    try {
+      in.skipNBytes(start);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+    return new LimitedInputStream(in, count);
+  }
+
+  @Override
+  public String getDescription() {
+    return "bytes " + start + "-" + getEnd() + " of " + resource.getDescription();
+  }
+}
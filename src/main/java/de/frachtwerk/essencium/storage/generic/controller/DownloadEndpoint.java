@@ -20,27 +20,34 @@
 package de.frachtwerk.essencium.storage.generic.controller;
 
 import de.frachtwerk.essencium.backend.model.exception.ResourceNotFoundException;
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
 import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
 import de.frachtwerk.essencium.storage.generic.service.FileService;
 import de.frachtwerk.essencium.storage.generic.service.UniqueNameCreator;
 import jakarta.validation.constraints.NotNull;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Component
 @RequiredArgsConstructor
@@ -51,75 +58,202 @@ public class DownloadEndpoint<
     S extends AbstractStorageInfo<F, ID, S>> {
   private final FileService<F, ID, S> service;
   private final UniqueNameCreator uniqueNameCreator;
+  private final FileStorageConfiguration config;
+
+  private final ExecutorService prefetchExecutor =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("zip-prefetch-", 0).factory());
 
   @NotNull
   public ResponseEntity<Resource> prepareResponse(ID id) {
+    return prepareResponse(id, HttpHeaders.EMPTY);
+  }
+
+  /**
+   * Prepares the download of a file, answering a {@code Range} header of the request with {@code
+   * 206 Partial Content}.
+   */
+  @NotNull
+  public ResponseEntity<Resource> prepareResponse(ID id, HttpHeaders requestHeaders) {
     F file =
         service.loadFile(id).orElseThrow(() -> new ResourceNotFoundException(String.valueOf(id)));
-    return prepareResponse(file);
+    return prepareResponse(file, requestHeaders);
   }
 
   @NotNull
   public ResponseEntity<Resource> prepareResponse(F file) {
+    return prepareResponse(file, HttpHeaders.EMPTY);
+  }
+
+  /**
+   * Prepares the download of a file, answering a {@code Range} header of the request with {@code
+   * 206 Partial Content}. Only the requested ranges are read from the storage.
+   */
+  @NotNull
+  public ResponseEntity<Resource> prepareResponse(F file, HttpHeaders requestHeaders) {
     Resource resource = getResource(file);
     // Fallback to the default content type if type could not be determined
     String mimeType = Optional.ofNullable(file.getMimeType()).orElse("application/octet-stream");
+    MediaType contentType = MediaType.parseMediaType(mimeType);
+
+    long length = contentLength(resource);
+    String range = requestHeaders.getFirst(HttpHeaders.RANGE);
+    // there are no validators to compare an If-Range header with, so the whole file is sent
+    if (length < 0 || range == null || requestHeaders.containsKey(HttpHeaders.IF_RANGE)) {
+      if (length >= 0 && sendfile(resource, 0, length)) {
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .contentLength(length)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header(
+                HttpHeaders.CONTENT_DISPOSITION, "attachment; filename='" + file.getName() + "'")
+            .build();
+      }
+      return buildResponse(resource, file.getName(), contentType);
+    }
 
-    return buildResponse(resource, file.getName(), MediaType.parseMediaType(mimeType));
+    List<ByteRangeResource> parts = getRanges(resource, range, length);
+    if (parts.isEmpty()) {
+      return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+          .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+          .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+          .build();
+    }
+    ResponseEntity.BodyBuilder builder =
+        ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+            .header(
+                HttpHeaders.CONTENT_DISPOSITION, "attachment; filename='" + file.getName() + "'");
+    if (parts.size() == 1) {
+      ByteRangeResource part = parts.getFirst();
+      builder
+          .contentType(contentType)
+          .header(
+              HttpHeaders.CONTENT_RANGE,
+              "bytes " + part.getStart() + "-" + part.getEnd() + "/" + length);
+      if (sendfile(resource, part.getStart(), part.getEnd() + 1)) {
+        return builder.contentLength(part.contentLength()).build();
+      }
+      return builder.body(part);
+    }
+    String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+    return builder
+        .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+        .body(new MultipartByteRangeResource(parts, contentType, length, boundary));
   }
 
-  public ResponseEntity<Resource> prepareZipResponse(
-      String responseFileName, Collection<F> abstractFiles) throws IOException {
-    try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        BufferedOutputStream bufferedOutputStream =
-            new BufferedOutputStream(byteArrayOutputStream);
-        ZipOutputStream zipOutputStream = new ZipOutputStream(bufferedOutputStream)) {
-      Set<String> names = new HashSet<>();
-      for (F f : abstractFiles) {
-        final InputStream inputStream = getResource(f).getInputStream();
-        String name = uniqueNameCreator.getUniqueName(f.getName(), names::contains);
-        names.add(name);
-        zipOutputStream.putNextEntry(new ZipEntry(name));
-        IOUtils.copy(inputStream, zipOutputStream);
-        zipOutputStream.closeEntry();
+  // Returns the satisfiable ranges of the header, or an empty list if the request can't be served.
+  private List<ByteRangeResource> getRanges(Resource resource, String rangeHeader, long length) {
+    List<HttpRange> ranges;
+    try {
+      ranges = HttpRange.parseRanges(rangeHeader);
+    } catch (IllegalArgumentException e) {
+      log.debug("Invalid range header {}", rangeHeader, e);
+      return List.of();
+    }
+    List<ByteRangeResource> parts = new ArrayList<>(ranges.size());
+    long total = 0;
+    for (HttpRange range : ranges) {
+      long start = range.getRangeStart(length);
+      if (start >= length) {
+        continue;
       }
-      zipOutputStream.finish();
-      zipOutputStream.flush();
+      long count = range.getRangeEnd(length) - start + 1;
+      if (count <= 0) {
+        continue;
+      }
+      parts.add(new ByteRangeResource(resource, start, count));
+      total += count;
+    }
+    // like Spring MVC, reject overlapping ranges that would send more than the whole file
+    if (total > length) {
+      return List.of();
+    }
+    return parts;
+  }
+
+  // Lets the container send local files with sendfile, see Sendfile.
+  private boolean sendfile(Resource resource, long start, long end) {
+    return config.isSendfile() && Sendfile.offer(resource, start, end);
+  }
+
+  private static long contentLength(Resource resource) {
+    try {
+      return resource.contentLength();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Prepares a ZIP archive of the given files that is written directly to the response. The content
+   * of the entries is fetched from the storage providers shortly before they are written, see
+   * {@link ZipEntryPrefetcher}.
+   */
+  public ResponseEntity<StreamingResponseBody> prepareZipResponse(
+      String responseFileName, Collection<F> abstractFiles) {
+    // resolve the resources upfront, so that unavailable files fail the request before the
+    // response is committed
+    Map<String, Resource> entries = new LinkedHashMap<>();
+    for (F f : abstractFiles) {
+      String name = uniqueNameCreator.getUniqueName(f.getName(), entries::containsKey);
+      entries.put(name, getResource(f));
+    }
+    StreamingResponseBody body = outputStream -> writeZip(entries, outputStream);
+    return buildResponse(body, responseFileName, MediaType.parseMediaType("application/zip"));
+  }
 
-      try (final ByteArrayInputStream inputStream =
-          new ByteArrayInputStream(byteArrayOutputStream.toByteArray())) {
-        Resource r = new InputStreamResource(inputStream);
-        return buildResponse(r, responseFileName, MediaType.parseMediaType("application/zip"));
+  private void writeZip(Map<String, Resource> entries, OutputStream outputStream)
+      throws IOException {
+    ZipOutputStream zipOutputStream = new ZipOutputStream(new BufferedOutputStream(outputStream));
+    try (ZipEntryPrefetcher prefetcher =
+        new ZipEntryPrefetcher(
+            entries.values(),
+            config.getZipPrefetchEntries(),
+            (int) config.getZipPrefetchBufferSize().toBytes(),
+            prefetchExecutor)) {
+      for (String name : entries.keySet()) {
+        zipOutputStream.putNextEntry(new ZipEntry(name));
+        try (InputStream inputStream = prefetcher.next()) {
+          inputStream.transferTo(zipOutputStream);
+        }
+        zipOutputStream.closeEntry();
       }
     }
+    // the response stream is closed by the container
+    zipOutputStream.finish();
+    zipOutputStream.flush();
   }
 
-  private ResponseEntity<Resource> buildResponse(
-      Resource resource, String name, MediaType contentType) {
+  private <T> ResponseEntity<T> buildResponse(T body, String name, MediaType contentType) {
     return ResponseEntity.ok()
         .contentType(contentType)
         .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename='" + name + "'")
-        .body(resource);
+        .body(body);
   }
 
   private Resource getResource(F file) {
     if (file.isAvailable()) {
+      List<S> replicas = new ArrayList<>();
       for (var storage : file.getStorageInfos()) {
         if (storage.isAvailable()) {
           Resource resource = storage.getContent();
           if (resource != null) {
             if (resource.exists()) {
-              return resource;
+              replicas.add(storage);
             }
           } else {
             log.warn("File is marked available but resource is null");
             service.markAsUnavailable(storage);
           }
-        } else {
+        } else if (!storage.isPending()) {
+          // pending replicas of the write-behind mode are not written yet
           log.warn("File {} in {} is not available.", file.getId(), storage);
           service.markAsUnavailable(storage);
         }
       }
+      if (!replicas.isEmpty()) {
+        return service.getContent(replicas);
+      }
     }
     throw new FileNotAvailableException("File not found");
   }
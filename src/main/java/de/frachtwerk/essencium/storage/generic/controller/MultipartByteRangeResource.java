@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.http.MediaType;
+
+/**
+ * {@code multipart/byteranges} body of several byte ranges. Each range is opened only when the body
+ * has been written up to it.
+ */
+class MultipartByteRangeResource extends AbstractResource {
+  private final List<ByteRangeResource> ranges;
+  private final MediaType contentType;
+  private final long totalLength;
+  private final String boundary;
+
+  MultipartByteRangeResource(
+      List<ByteRangeResource> ranges, MediaType contentType, long totalLength, String boundary) {
+    this.ranges = ranges;
+    this.contentType = contentType;
+    this.totalLength = totalLength;
+    this.boundary = boundary;
+  }
+
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long contentLength() {
+    long length = trailer().length;
+    for (ByteRangeResource range : ranges) {
+      length += header(range).length + range.contentLength();
+    }
+    return length;
+  }
+
+  @Override
+  public InputStream getInputStream() {
+    return new BodyInputStream();
+  }
+
+  @Override
+  public String getDescription() {
+    return "multipart/byteranges of " + ranges.size() + " ranges";
+  }
+
+  private byte[] header(ByteRangeResource range) {
+    return ("\r\n--"
+            + boundary
+            + "\r\nContent-Type: "
+            + contentType
+            + "\r\nContent-Range: bytes "
+            + range.getStart()
+            + "-"
+            + range.getEnd()
+            + "/"
+            + totalLength
+            + "\r\n\r\n")
+        .getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private byte[] trailer() {
+    return ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /** Alternates between the part headers and the lazily opened ranges. */
+  private class BodyInputStream extends InputStream {
+    private int segment;
+    private InputStream current;
+
+    private boolean next() throws IOException {
+      if (segment > 2 * ranges.size()) {
+        return false;
+      }
+      int index = segment++;
+      if (index == 2 * ranges.size()) {
+        current = new ByteArrayInputStream(trailer());
+      } else if (index % 2 == 0) {
+        current = new ByteArrayInputStream(header(ranges.get(index / 2)));
+      } else {
+        current = ranges.get(index / 2).getInputStream();
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      while (current != null || next()) {
+        int n = current.read(b, off, len);
+        if (n >= 0) {
+          return n;
+        }
+        current.close();
+        current = null;
+      }
+      return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (current != null) {
+        current.close();
+        current = null;
+      }
+      segment = 2 * ranges.size() + 1;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.springframework.core.io.Resource;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Hands files of the local file system to the servlet container, which sends them with {@code
+ * sendfile} so that their bytes are copied by the kernel instead of through buffers of the JVM. The
+ * attributes are those used by Tomcat's own {@code DefaultServlet}; other containers never announce
+ * support for them.
+ */
+final class Sendfile {
+  private static final String SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String START = "org.apache.tomcat.sendfile.start";
+  private static final String END = "org.apache.tomcat.sendfile.end";
+
+  private Sendfile() {}
+
+  /**
+   * Asks the container of the current request to send bytes {@code start} (inclusive) to {@code
+   * end} (exclusive) of the resource. If it accepts, the response must not have a body but a {@code
+   * Content-Length} of {@code end - start}. Files that are missing, unreadable or too short are not
+   * offered, so that they are streamed with the failover of the resource instead.
+   *
+   * @return whether the container sends the bytes
+   */
+  static boolean offer(Resource resource, long start, long end) {
+    if (!(RequestContextHolder.getRequestAttributes()
+            instanceof ServletRequestAttributes attributes)
+        || !Boolean.TRUE.equals(attributes.getRequest().getAttribute(SUPPORT))
+        || !resource.isFile()) {
+      return false;
+    }
+    File file;
+    try {
+      file = resource.getFile();
+    } catch (IOException e) {
+      return false;
+    }
+    // the container can't fail over to another replica once it has accepted, so only offer files
+    // that can be read
+    if (!file.isFile() || !Files.isReadable(file.toPath()) || file.length() < end) {
+      return false;
+    }
+    HttpServletRequest request = attributes.getRequest();
+    request.setAttribute(FILENAME, file.getAbsolutePath());
+    request.setAttribute(START, start);
+    request.setAttribute(END, end);
+    return true;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.springframework.core.io.Resource;
+
+/**
+ * Opens the contents of ZIP entries in order while fetching the following entries in the
+ * background. Up to {@code depth} entries are opened ahead of time and their first {@code
+ * bufferSize} bytes are buffered, so the round trips to the storage overlap with the compression of
+ * the current entry. The entries are fetched on a shared executor, closing the prefetcher cancels
+ * the fetches still in progress and closes the streams that have not been handed out.
+ */
+class ZipEntryPrefetcher implements Closeable {
+  private final Iterator<Resource> resources;
+  private final int bufferSize;
+  private final ExecutorService executor;
+  private final Deque<Future<Prefetched>> window = new ArrayDeque<>();
+  // streams opened in the background that have not been handed out yet
+  private final Set<InputStream> pending = ConcurrentHashMap.newKeySet();
+  private volatile boolean closed;
+
+  /**
+   * @param executor runs the fetches, at most {@code depth} at a time per prefetcher
+   */
+  ZipEntryPrefetcher(
+      Collection<Resource> resources, int depth, int bufferSize, ExecutorService executor) {
+    this.resources = resources.iterator();
+    this.bufferSize = bufferSize;
+    this.executor = depth > 0 ? executor : null;
+    for (int i = 0; i < depth && requestNext(); i++) {
+      // fill the window
+    }
+  }
+
+  /** Returns the content of the next entry, which has to be closed by the caller. */
+  InputStream next() throws IOException {
+    if (executor == null) {
+      return resources.next().getInputStream();
+    }
+    Future<Prefetched> future = window.pollFirst();
+    if (future == null) {
+      throw new IllegalStateException("No more entries");
+    }
+    Prefetched prefetched = await(future);
+    pending.remove(prefetched.source());
+    requestNext();
+    return prefetched.content();
+  }
+
+  private boolean requestNext() {
+    if (!resources.hasNext()) {
+      return false;
+    }
+    Resource resource = resources.next();
+    window.addLast(executor.submit(() -> prefetch(resource)));
+    return true;
+  }
+
+  private Prefetched prefetch(Resource resource) throws IOException {
+    InputStream in = resource.getInputStream();
+    pending.add(in);
+    if (closed) {
+      in.close();
+      throw new IOException("Prefetcher closed");
+    }
+    byte[] head = in.readNBytes(bufferSize);
+    if (head.length < bufferSize) {
+      pending.remove(in);
+      in.close();
+      return new Prefetched(in, new ByteArrayInputStream(head));
+    }
+    return new Prefetched(in, new SequenceInputStream(new ByteArrayInputStream(head), in));
+  }
+
+  private static Prefetched await(Future<Prefetched> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Prefetching of ZIP entry was interrupted");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw new IOException("Could not prefetch ZIP entry", e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    if (executor != null) {
+      window.forEach(future -> future.cancel(true));
+      window.clear();
+    }
+    for (InputStream in : pending) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // nothing left to do with a stream that can't be closed
+      }
+    }
+    pending.clear();
+  }
+
+  private record Prefetched(InputStream source, InputStream content) {}
+}
@@ -43,6 +43,16 @@ public abstract class AbstractFile<
   private long size;
   private String mimeType;
 
+  // hex encoded SHA-256 hash of the content, only set if files are deduplicated
+  @Column(length = 64)
+  private String contentHash;
+
+  protected AbstractFile(String name, long size, String mimeType) {
+    this.name = name;
+    this.size = size;
+    this.mimeType = mimeType;
+  }
+
   @NotNull
   @OrderColumn
   @OneToMany(cascade = CascadeType.ALL)
@@ -23,6 +23,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import de.frachtwerk.essencium.backend.model.AbstractBaseModel;
 import jakarta.persistence.*;
 import java.io.Serializable;
+import java.time.Instant;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 import org.springframework.core.io.Resource;
@@ -40,6 +41,13 @@ public abstract class AbstractStorageInfo<
 
   @ManyToOne @JsonIgnore @EqualsAndHashCode.Exclude @ToString.Exclude private F file;
   @Builder.Default private boolean available = true;
+  // replica that is still waiting to be written in the background, see
+  // StorageService#prepareReplica
+  @Builder.Default private boolean pending = false;
+  // failed attempts to write the pending replica and time of the next attempt, see
+  // ReplicationService
+  @JsonIgnore private int replicationAttempts;
+  @JsonIgnore private Instant nextReplicationAttempt;
   @Transient @JsonIgnore private Resource content;
 
   public AbstractStorageInfo(F file) {
@@ -24,16 +24,18 @@ import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
 import de.frachtwerk.essencium.storage.generic.model.Providers;
 import de.frachtwerk.essencium.storage.generic.service.StorageService;
 import de.frachtwerk.essencium.storage.generic.service.UniqueNameCreator;
+import jakarta.annotation.Nullable;
 import jakarta.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.FileSystemResource;
 
 @RequiredArgsConstructor
 public abstract class AbstractLocalStorageService<
@@ -48,30 +50,71 @@ public abstract class AbstractLocalStorageService<
   @NotNull private final UniqueNameCreator uniqueNameCreator;
 
   @Override
-  public final S saveFile(String originalName, byte[] content) throws IOException {
-    String name;
-    if (originalName != null && config.isKeepFileName()) {
-      name = uniqueNameCreator.getUniqueName(originalName, this::exists);
-    } else {
-      do {
-        name = UUID.randomUUID().toString();
-      } while (new java.io.File(name).exists());
-    }
-    java.io.File f = fileCreator.createFile(name);
-    Files.write(f.toPath(), content);
+  public final S saveFile(
+      String originalName, @Nullable String mimeType, InputStream content, long length)
+      throws IOException {
+    java.io.File f = createFile(originalName);
+    fileCreator.write(f, content, length);
     final String path = f.getAbsolutePath();
     LOG.debug("Saved file at {}.", path);
     final S info = getNewLocalStorageInfo(null, path);
-    info.setContent(new FileSystemResource(f));
+    info.setContent(new LocalFileResource(f));
+    return info;
+  }
+
+  @Override
+  public final S prepareReplica(String originalName) throws IOException {
+    java.io.File f = createFile(originalName);
+    final S info = getNewLocalStorageInfo(null, f.getAbsolutePath());
+    info.setAvailable(false);
+    info.setPending(true);
     return info;
   }
 
+  @Override
+  public final void writeReplica(
+      S abstractInfo, @Nullable String mimeType, InputStream content, long length)
+      throws IOException {
+    AbstractLocalStorageInfo<F, ID, S> info = (AbstractLocalStorageInfo<F, ID, S>) abstractInfo;
+    java.io.File f = new java.io.File(info.getPath());
+    fileCreator.write(f, content, length);
+    LOG.debug("Wrote replica at {}.", info.getPath());
+    abstractInfo.setContent(new LocalFileResource(f));
+    abstractInfo.setPending(false);
+    abstractInfo.setAvailable(true);
+  }
+
+  // Creates the file the content is written to, so that no concurrent upload takes its name.
+  private java.io.File createFile(String originalName) throws IOException {
+    if (originalName != null && config.isKeepFileName()) {
+      java.io.File[] file = new java.io.File[1];
+      uniqueNameCreator.reserveUniqueName(
+          originalName,
+          this::exists,
+          name -> {
+            try {
+              file[0] = fileCreator.createFile(name);
+              return true;
+            } catch (FileAlreadyExistsException e) {
+              return false;
+            }
+          });
+      return file[0];
+    }
+    return fileCreator.createFile(UUID.randomUUID().toString());
+  }
+
   protected abstract <SI extends AbstractLocalStorageInfo<F, ID, S>> SI getNewLocalStorageInfo(
       F file, String path);
 
   private boolean exists(String name) {
-    Path path = Path.of(config.resolvePath().toString(), name);
-    return Files.exists(path);
+    return Files.exists(fileCreator.resolve(name));
+  }
+
+  @Override
+  public final S referenceFile(S abstractInfo) {
+    AbstractLocalStorageInfo<F, ID, S> info = (AbstractLocalStorageInfo<F, ID, S>) abstractInfo;
+    return getNewLocalStorageInfo(null, info.getPath());
   }
 
   @Override
@@ -91,7 +134,7 @@ public abstract class AbstractLocalStorageService<
           Path.of(info.getPath()).getFileName());
       info.setAvailable(false);
     } else {
-      info.setContent(new FileSystemResource(file));
+      info.setContent(new LocalFileResource(file));
     }
     return (S) info;
   }
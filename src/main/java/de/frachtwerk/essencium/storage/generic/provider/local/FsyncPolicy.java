@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.local;
+
+/** When files written by the local provider are flushed to the storage device. */
+public enum FsyncPolicy {
+  /** Files are left to the page cache of the operating system. */
+  NONE,
+  /** The content of every file is flushed before the file is renamed to its final name. */
+  FILE,
+  /** Like {@link #FILE}, and the directory is flushed after the rename. */
+  FILE_AND_DIRECTORY,
+  /**
+   * Files and directories are flushed like {@link #FILE_AND_DIRECTORY}, but in batches collected
+   * over {@code groupCommitInterval}. The files of a batch are flushed concurrently and every
+   * directory once, so that concurrent writes share the cost of a flush.
+   */
+  GROUP_COMMIT
+}
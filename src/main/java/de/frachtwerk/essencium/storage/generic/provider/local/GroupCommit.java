@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.local;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Commits written files in batches. Files are collected over an interval, then all files of a batch
+ * are flushed concurrently, renamed to their final names, and every directory they were renamed in
+ * is flushed once, so that writes to the same directory share a single flush of it. A write
+ * therefore waits for at most one interval plus the flushes of its batch.
+ */
+class GroupCommit implements AutoCloseable {
+  private static final Logger LOG = LoggerFactory.getLogger(GroupCommit.class);
+
+  private record Commit(Path temp, Path target, CompletableFuture<Void> done) {}
+
+  private final ScheduledExecutorService scheduler =
+      Executors.newSingleThreadScheduledExecutor(
+          Thread.ofPlatform().name("local-group-commit").daemon(true).factory());
+  private List<Commit> pending = new ArrayList<>();
+  private boolean closed;
+
+  GroupCommit(Duration interval) {
+    long nanos = Math.max(1, interval.toNanos());
+    scheduler.scheduleWithFixedDelay(this::flush, nanos, nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns a future that completes once the temporary file has been flushed, atomically renamed to
+   * the target and the directory of the target has been flushed with the next batch.
+   */
+  synchronized CompletableFuture<Void> commit(Path temp, Path target) {
+    if (closed) {
+      // no further batches, commit right away
+      try {
+        force(temp);
+        move(temp, target);
+        force(target.getParent());
+        return CompletableFuture.completedFuture(null);
+      } catch (IOException | RuntimeException e) {
+        return CompletableFuture.failedFuture(e);
+      }
+    }
+    Commit commit = new Commit(temp, target, new CompletableFuture<>());
+    pending.add(commit);
+    return commit.done();
+  }
+
+  void flush() {
+    List<Commit> batch;
+    synchronized (this) {
+      if (pending.isEmpty()) {
+        return;
+      }
+      batch = pending;
+      pending = new ArrayList<>();
+    }
+    Map<Path, List<Commit>> directories = new ConcurrentHashMap<>();
+    List<Path> failed = Collections.synchronizedList(new ArrayList<>());
+    // the storage device serves concurrent flushes together, e.g. with a single journal commit
+    try (ExecutorService flushes = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Commit commit : batch) {
+        flushes.execute(
+            () -> {
+              if (commit.done().isCancelled()) {
+                return;
+              }
+              try {
+                force(commit.temp());
+                move(commit.temp(), commit.target());
+                directories
+                    .computeIfAbsent(
+                        commit.target().getParent(),
+                        d -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(commit);
+              } catch (IOException | RuntimeException e) {
+                failed.add(commit.target());
+                commit.done().completeExceptionally(e);
+              }
+            });
+      }
+    }
+    try (ExecutorService flushes = Executors.newVirtualThreadPerTaskExecutor()) {
+      directories.forEach(
+          (directory, commits) ->
+              flushes.execute(
+                  () -> {
+                    try {
+                      force(directory);
+                      commits.forEach(commit -> commit.done().complete(null));
+                    } catch (IOException | RuntimeException e) {
+                      commits.forEach(
+                          commit -> {
+                            failed.add(commit.target());
+                            commit.done().completeExceptionally(e);
+                          });
+                    }
+                  }));
+    }
+    if (!failed.isEmpty()) {
+      LOG.warn("Could not commit {} of {} files: {}", failed.size(), batch.size(), failed);
+    }
+  }
+
+  private static void move(Path temp, Path target) throws IOException {
+    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /** Flushes a file or directory to the storage device. */
+  static void force(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        channel.force(true);
+      } catch (IOException e) {
+        // directories can't be opened for flushing on every platform, e.g. Windows
+        LOG.debug("Could not flush directory {}", path, e);
+      }
+    } else {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        channel.force(true);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    scheduler.shutdown();
+    flush();
+  }
+}
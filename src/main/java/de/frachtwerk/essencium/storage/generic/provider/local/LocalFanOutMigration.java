@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.local;
+
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves the files of a flat local storage directory into the fan-out layout of {@link
+ * LocalFileCreator#resolve(String)} while the application keeps running. Every file is first linked
+ * to its new location, then the path of its storage info is updated with a bulk update. Files no
+ * storage info refers to, neither with the old nor with the new path, are deleted if they were last
+ * modified before the application started, e.g. because their file has been deleted after a
+ * previous run linked them. More recent ones may still be written and are left in place.
+ *
+ * <p>The bulk update bypasses entities that have already been loaded, which still hold the old path
+ * and may write it back when they are saved. The old location is therefore kept by the run that
+ * links a file and only removed by a later run, e.g. after the next restart, which first points
+ * storage infos that still hold the old path to the new location again.
+ */
+@Service
+@RequiredArgsConstructor
+public class LocalFanOutMigration {
+  private static final Logger LOG = LoggerFactory.getLogger(LocalFanOutMigration.class);
+
+  private final LocalStorageConfiguration config;
+  private final LocalFileCreator fileCreator;
+  private final EntityManager entityManager;
+  private final TransactionTemplate transactionTemplate;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrateOnStartup() {
+    if (config.isActive()
+        && !config.isUseTempFiles()
+        && config.isMigrateFanOutOnStartup()
+        && config.getFanOutDepth() > 0) {
+      Thread.ofPlatform()
+          .name("local-fan-out-migration")
+          .daemon(true)
+          .start(
+              () -> {
+                try {
+                  migrate(config.getFanOutMigrationParallelism());
+                } catch (IOException | RuntimeException e) {
+                  LOG.error("Migration to the fan-out layout failed", e);
+                }
+              });
+    }
+  }
+
+  /**
+   * Moves the files stored directly in the storage directory into the fan-out layout. Files are
+   * linked to their new location, their old location is removed by the next call.
+   *
+   * @param parallelism number of files moved concurrently
+   * @return number of moved files
+   */
+  public int migrate(int parallelism) throws IOException {
+    Path root = config.resolvePath();
+    LOG.info("Moving files in {} into the fan-out layout", root);
+    AtomicInteger moved = new AtomicInteger();
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, parallelism),
+            Thread.ofPlatform().name("local-fan-out-migration-", 0).factory());
+    // bounds the number of queued files, the directory may hold millions of them
+    Semaphore queued = new Semaphore(Math.max(1, parallelism) * 4);
+    try (Stream<Path> files = Files.list(root)) {
+      files
+          .filter(Files::isRegularFile)
+          // skip temporary files of writes in progress
+          .filter(file -> !file.getFileName().toString().startsWith("."))
+          .forEach(
+              file -> {
+                queued.acquireUninterruptibly();
+                executor.execute(
+                    () -> {
+                      try {
+                        if (move(file)) {
+                          moved.incrementAndGet();
+                        }
+                      } catch (IOException | RuntimeException e) {
+                        LOG.warn("Could not move {} into the fan-out layout", file, e);
+                      } finally {
+                        queued.release();
+                      }
+                    });
+              });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+    LOG.info("Moved {} files in {} into the fan-out layout", moved.get(), root);
+    return moved.get();
+  }
+
+  // Links a single file to its new location, or removes the old location if a previous run has
+  // linked it. Returns false if no storage info refers to the file.
+  private boolean move(Path file) throws IOException {
+    Path target = fileCreator.resolve(file.getFileName().toString());
+    if (target.equals(file)) {
+      return false;
+    }
+    if (isMigrated(file, target)) {
+      // point storage infos saved with the old path since the previous run to the new location
+      updatePath(file, target);
+      Files.deleteIfExists(file);
+      return false;
+    }
+    fileCreator.createDirectory(target.getParent());
+    try {
+      Files.createLink(target, file);
+    } catch (FileAlreadyExistsException e) {
+      LOG.warn("Cannot move {}, {} already exists", file, target);
+      return false;
+    } catch (NoSuchFileException e) {
+      // deleted in the meantime
+      return false;
+    } catch (UnsupportedOperationException e) {
+      // hard links are not supported by the file system, fall back to a copy
+      Files.copy(file, target, StandardCopyOption.COPY_ATTRIBUTES);
+    }
+    int updated;
+    try {
+      updated = updatePath(file, target);
+    } catch (RuntimeException e) {
+      Files.deleteIfExists(target);
+      throw e;
+    }
+    if (updated == 0) {
+      if (countReferences(target) > 0) {
+        // the link of a previous run has been lost, the old location is removed by the next run
+        return false;
+      }
+      Files.deleteIfExists(target);
+      if (Files.getLastModifiedTime(file).compareTo(started()) < 0) {
+        Files.deleteIfExists(file);
+        LOG.debug("Deleted {}, no storage info refers to it", file);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private static FileTime started() {
+    return FileTime.fromMillis(ManagementFactory.getRuntimeMXBean().getStartTime());
+  }
+
+  private long countReferences(Path path) {
+    return entityManager
+        .createQuery("SELECT COUNT(i) FROM LOCAL_STORAGE_INFO i WHERE i.path = :path", Long.class)
+        .setParameter("path", path.toFile().getAbsolutePath())
+        .getSingleResult();
+  }
+
+  // Whether a previous run has linked the file to its new location. Copies made on file systems
+  // without hard links can't be told apart from other files of the same name and are kept.
+  private static boolean isMigrated(Path file, Path target) throws IOException {
+    try {
+      return Files.exists(target) && Files.isSameFile(file, target);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+  }
+
+  private int updatePath(Path file, Path target) {
+    Integer updated =
+        transactionTemplate.execute(
+            status ->
+                entityManager
+                    .createQuery(
+                        "UPDATE LOCAL_STORAGE_INFO i SET i.path = :target WHERE i.path = :file")
+                    .setParameter("target", target.toFile().getAbsolutePath())
+                    .setParameter("file", file.toFile().getAbsolutePath())
+                    .executeUpdate());
+    return updated == null ? 0 : updated;
+  }
+}
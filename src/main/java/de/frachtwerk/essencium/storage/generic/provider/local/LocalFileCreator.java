@@ -21,22 +21,51 @@ package de.frachtwerk.essencium.storage.generic.provider.local;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
-public class LocalFileCreator {
+public class LocalFileCreator implements DisposableBean {
   private static final Logger LOG = LoggerFactory.getLogger(LocalFileCreator.class);
 
+  // directory in the storage directory that holds the temporary files of write, it can't be used
+  // as file name
+  static final String TEMP_DIRECTORY = ".tmp";
+
   private final LocalStorageConfiguration config;
 
+  // directories of the fan-out layout that are known to exist
+  private final Set<Path> knownDirectories = ConcurrentHashMap.newKeySet();
+  private GroupCommit groupCommit;
+
   @EventListener(ApplicationReadyEvent.class)
   public void init() throws IOException {
     if (config.isActive() && !config.isUseTempFiles()) {
@@ -46,17 +75,190 @@ public class LocalFileCreator {
         LOG.debug("Directory {} for storing files does not exist.", path);
         Files.createDirectories(path);
         LOG.info("Created directory for file storing.");
+      } else {
+        Thread.ofVirtual().name("local-temp-file-cleanup").start(() -> deleteTempFiles(path));
       }
     }
   }
 
+  // Deletes the temporary files of writes interrupted by a crash. Files modified since the start of
+  // this instance may belong to writes of other instances sharing the directory and are kept.
+  int deleteTempFiles(Path root) {
+    Path directory = root.resolve(TEMP_DIRECTORY);
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    FileTime started = FileTime.fromMillis(ManagementFactory.getRuntimeMXBean().getStartTime());
+    int deleted = 0;
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        if (Files.isRegularFile(file)
+            && Files.getLastModifiedTime(file).compareTo(started) < 0
+            && Files.deleteIfExists(file)) {
+          deleted++;
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      LOG.warn("Could not delete temporary files in {}", root, e);
+    }
+    if (deleted > 0) {
+      LOG.info("Deleted {} temporary files of interrupted writes in {}", deleted, root);
+    }
+    return deleted;
+  }
+
   public File createFile(String name) throws IOException {
     if (config.isUseTempFiles()) {
       return File.createTempFile(name, null);
     } else {
-      Path pre = Path.of(config.resolvePath().toString(), name);
-      Path path = Files.createFile(pre);
+      if (TEMP_DIRECTORY.equals(name)) {
+        throw new FileAlreadyExistsException(name, null, "reserved for temporary files");
+      }
+      Path pre = resolve(name);
+      createDirectory(pre.getParent());
+      Path path;
+      try {
+        path = Files.createFile(pre);
+      } catch (NoSuchFileException e) {
+        // the directory has been removed since it was created
+        knownDirectories.remove(pre.getParent());
+        createDirectory(pre.getParent());
+        path = Files.createFile(pre);
+      }
       return path.toFile();
     }
   }
+
+  /**
+   * Returns the path of the file with the given name. With a {@code fanOutDepth} greater than zero,
+   * the file is placed in nested subdirectories named after the leading characters of the SHA-256
+   * hash of its name, e.g. {@code ab/cd/name}, so that no directory holds too many files.
+   *
+   * @throws IllegalArgumentException if the name is not a single path element
+   */
+  public Path resolve(String name) {
+    Path element = Path.of(name);
+    if (name.isEmpty()
+        || element.getNameCount() != 1
+        || element.isAbsolute()
+        || name.equals(".")
+        || name.equals("..")) {
+      throw new IllegalArgumentException("Invalid file name " + name);
+    }
+    Path directory = config.resolvePath();
+    int depth = config.getFanOutDepth();
+    if (depth > 0) {
+      int width = config.getFanOutWidth();
+      String hash = HexFormat.of().formatHex(sha256(name));
+      if (depth * width > hash.length()) {
+        throw new IllegalStateException(
+            "fanOutDepth * fanOutWidth must not exceed " + hash.length());
+      }
+      for (int level = 0; level < depth; level++) {
+        directory = directory.resolve(hash.substring(level * width, (level + 1) * width));
+      }
+    }
+    return directory.resolve(name);
+  }
+
+  // Creates a directory of the fan-out layout unless it is known to exist.
+  void createDirectory(Path directory) throws IOException {
+    if (!knownDirectories.contains(directory)) {
+      Files.createDirectories(directory);
+      knownDirectories.add(directory);
+    }
+  }
+
+  private static byte[] sha256(String name) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(name.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Writes the content to a temporary file in the {@code .tmp} directory, flushes it according to
+   * the {@link FsyncPolicy} and atomically renames it to the given file. The file therefore either
+   * keeps its previous content or receives the complete new one, even if the application crashes.
+   * If the content can't be written completely, the given file is deleted.
+   *
+   * @param length number of bytes the content must provide, or a negative value if unknown
+   */
+  public void write(File file, InputStream content, long length) throws IOException {
+    Path target = file.toPath().toAbsolutePath();
+    Path directory = target.getParent();
+    FsyncPolicy policy = config.getFsyncPolicy();
+    Path temp = Files.createTempFile(tempDirectory(directory), target.getFileName() + ".", ".tmp");
+    try {
+      long written;
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        written = content.transferTo(Channels.newOutputStream(channel));
+        if (length >= 0 && written != length) {
+          throw new IOException("Expected " + length + " bytes but received " + written);
+        }
+        if (policy == FsyncPolicy.FILE || policy == FsyncPolicy.FILE_AND_DIRECTORY) {
+          channel.force(true);
+        }
+      }
+      if (policy == FsyncPolicy.GROUP_COMMIT) {
+        // flushed, renamed and its directory flushed together with concurrent writes
+        await(getGroupCommit().commit(temp, target));
+        return;
+      }
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temp);
+      Files.deleteIfExists(target);
+      throw e;
+    }
+    if (policy == FsyncPolicy.FILE_AND_DIRECTORY) {
+      GroupCommit.force(directory);
+    }
+  }
+
+  // Temporary files are kept apart from the stored files, so that they can't be mistaken for each
+  // other. They stay in the directory of the file if it is outside the storage directory, as they
+  // must be on the same file system to be renamed atomically.
+  private Path tempDirectory(Path directory) throws IOException {
+    Path root = config.resolvePath().toAbsolutePath();
+    if (config.isUseTempFiles() || !directory.startsWith(root)) {
+      return directory;
+    }
+    Path temp = root.resolve(TEMP_DIRECTORY);
+    createDirectory(temp);
+    return temp;
+  }
+
+  private synchronized GroupCommit getGroupCommit() {
+    if (groupCommit == null) {
+      groupCommit = new GroupCommit(config.getGroupCommitInterval());
+    }
+    return groupCommit;
+  }
+
+  private static void await(CompletableFuture<Void> flush) throws IOException {
+    try {
+      flush.get();
+    } catch (InterruptedException e) {
+      // a group commit that has not started yet leaves the file alone
+      flush.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the file to be flushed");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException cause) {
+        throw cause;
+      }
+      throw new IOException("Could not flush file", e.getCause());
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (groupCommit != null) {
+      groupCommit.close();
+      groupCommit = null;
+    }
+  }
 }
@@ -20,6 +20,7 @@
 package de.frachtwerk.essencium.storage.generic.provider.local;
 
 import java.nio.file.Path;
+import java.time.Duration;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -32,6 +33,17 @@ public class LocalStorageConfiguration {
   private String path;
   private boolean useTempFiles = false;
   private boolean keepFileName = false;
+  // when written files are flushed to the storage device
+  private FsyncPolicy fsyncPolicy = FsyncPolicy.FILE;
+  // interval in which flushes are collected with FsyncPolicy.GROUP_COMMIT
+  private Duration groupCommitInterval = Duration.ofMillis(10);
+  // levels of hashed subdirectories files are stored in, 0 stores all files in path itself
+  private int fanOutDepth = 0;
+  // hex characters of the name hash per subdirectory level, so each level has 16^width entries
+  private int fanOutWidth = 2;
+  // move files of a flat directory into the fan-out layout in the background after startup
+  private boolean migrateFanOutOnStartup = false;
+  private int fanOutMigrationParallelism = 4;
 
   public Path resolvePath() {
     return Path.of(path.replaceFirst("^~", System.getProperty("user.home")));
@@ -34,5 +34,7 @@ public interface AbstractS3StorageInfo<
 
   String getS3ObjectKey();
 
+  F getFile();
+
   void setContent(Resource byteArrayResource);
 }
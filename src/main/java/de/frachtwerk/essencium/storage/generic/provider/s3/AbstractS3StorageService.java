@@ -22,26 +22,19 @@ package de.frachtwerk.essencium.storage.generic.provider.s3;
 import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
 import de.frachtwerk.essencium.storage.generic.model.Providers;
-import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
 import de.frachtwerk.essencium.storage.generic.service.StorageService;
 import jakarta.annotation.Nullable;
-import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.io.Serializable;
-import java.net.URI;
 import java.util.*;
-import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.core.io.InputStreamResource;
-import software.amazon.awssdk.auth.credentials.*;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.S3ClientBuilder;
 import software.amazon.awssdk.services.s3.model.*;
 
 public abstract class AbstractS3StorageService<
@@ -50,112 +43,185 @@ public abstract class AbstractS3StorageService<
         S extends AbstractStorageInfo<F, ID, S>>
     implements StorageService<F, ID, S> {
 
+  private static final int MAX_KEY_ATTEMPTS = 3;
+
   private final Logger LOG = LoggerFactory.getLogger(AbstractS3StorageService.class);
   @NotNull private final S3StorageConfiguration config;
-  private final MimeTypeHelper mimeTypeHelper;
+  @NotNull private final S3ClientProvider clientProvider;
+  @NotNull private final S3BucketAccessValidator bucketValidator;
+  private final S3ObjectKeyGenerator keyGenerator;
 
   public AbstractS3StorageService(
-      @NotNull S3StorageConfiguration config, MimeTypeHelper mimeTypeHelper) {
+      @NotNull S3StorageConfiguration config,
+      @NotNull S3ClientProvider clientProvider,
+      @NotNull S3BucketAccessValidator bucketValidator) {
     this.config = config;
-    this.mimeTypeHelper = mimeTypeHelper;
-  }
-
-  // Create the S3Client object.
-  private S3Client getClient() {
-    AwsCredentialsProvider credentialProvider = getCredentialProvider();
-    S3ClientBuilder builder =
-        S3Client.builder()
-            .credentialsProvider(credentialProvider)
-            .region(getRegion(config.getRegion()));
-
-    if (StringUtils.isNotBlank(config.getEndpointUrl())) {
-      LOG.debug("Using custom endpoint: {}", config.getEndpointUrl());
-      builder.endpointOverride(URI.create(config.getEndpointUrl())).forcePathStyle(true);
-    }
-    return builder.build();
-  }
-
-  // Creates a credentials provider.
-  private AwsCredentialsProvider getCredentialProvider() {
-    /* according to https://sdk.amazonaws.com/java/api/latest/software/amazon/awssdk/auth/credentials/DefaultCredentialsProvider.html DefaultCredentialsProvider covers most cases of authentication.
-
-        AWS credentials provider chain that looks for credentials in this order:
-
-        1. Java System Properties - aws.accessKeyId and aws.secretAccessKey
-        2. Environment Variables - AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY
-        3. Web Identity Token credentials from system properties or environment variables
-        4. Credential profiles file at the default location (~/.aws/credentials) shared by all AWS SDKs and the AWS CLI
-        5. Credentials delivered through the Amazon EC2 container service if "AWS_CONTAINER_CREDENTIALS_RELATIVE_URI" environment variable is set and security manager has permission to access the variable,
-        6. Instance profile credentials delivered through the Amazon EC2 metadata service
-
-        So if no Custom Endpoint and AccessKey and SecretKey are set, the DefaultCredentialsProvider should be sufficient.
-    */
-    if (StringUtils.isNotBlank(config.getEndpointUrl())
-        && StringUtils.isNotBlank(config.getAccessKey())
-        && StringUtils.isNotBlank(config.getSecretKey())) {
-      LOG.debug("Using custom credentials provider");
-      AwsCredentials awsCredentials =
-          AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey());
-      return StaticCredentialsProvider.create(awsCredentials);
-    } else {
-      LOG.debug("Using default credentials provider");
-      // do not use DefaultCredentialsProvider.create() as it does not create a new instance.
-      DefaultCredentialsProvider defaultCredentialsProvider =
-          DefaultCredentialsProvider.builder().build();
-      LOG.debug(
-          "DefaultCredentialsProvider, accessKeyId: {}",
-          defaultCredentialsProvider.resolveCredentials().accessKeyId());
-      return defaultCredentialsProvider;
-    }
-  }
-
-  private Region getRegion(@Nullable String region) {
-    if (StringUtils.isNotBlank(region)) return Region.of(region);
-    else return Region.EU_CENTRAL_1;
+    this.clientProvider = clientProvider;
+    this.bucketValidator = bucketValidator;
+    this.keyGenerator = new S3ObjectKeyGenerator(config);
   }
 
   @Override
-  public final S saveFile(String originalName, byte[] content) throws IOException {
+  public final S saveFile(
+      String originalName, @Nullable String mimeType, InputStream content, long length)
+      throws IOException {
     LOG.debug("Saving file {} to S3 (saveFile())", originalName);
-    try (S3Client s3 = getClient()) {
-      // ensure bucket exists
-      testBucketAccess(s3, config.getBucketName());
-
-      // create object key
-      String s3ObjectKey = getNewObjectKey(s3, config.getBucketName());
-
-      // prepare upload
-      PutObjectRequest putObjectRequest =
-          PutObjectRequest.builder()
-              .bucket(config.getBucketName())
-              .key(s3ObjectKey)
-              .contentType(mimeTypeHelper.getMimeType(s3ObjectKey, content))
-              .contentLength((long) content.length)
-              .build();
-      PutObjectResponse putObjectResponse =
-          s3.putObject(putObjectRequest, RequestBody.fromBytes(content));
-      LOG.debug("S3: PutObjectResponse: {}", putObjectResponse);
+    S3Client s3 = clientProvider.getClient();
+    try {
+      // ensure bucket exists, cached between validation intervals
+      bucketValidator.ensureAccess();
 
+      byte[] head = readHead(content, length);
+      String s3ObjectKey;
+      long size;
+      for (int attempt = 1; ; attempt++) {
+        s3ObjectKey = getNewObjectKey();
+        try {
+          size = upload(s3, s3ObjectKey, mimeType, head, content, length);
+          break;
+        } catch (S3Exception e) {
+          // only a single PUT can be repeated, as its content is still in memory
+          if (!isKeyConflict(e) || attempt >= MAX_KEY_ATTEMPTS || !isSinglePut(head, length)) {
+            throw e;
+          }
+          LOG.warn("S3: Object key {} already exists, retrying with a new key", s3ObjectKey);
+        }
+      }
       LOG.info("S3: {} has been uploaded successfully", s3ObjectKey);
 
       final S info = getNewAbstractS3StorageInfo(null, s3ObjectKey);
-      info.setContent(new InputStreamResource(new ByteArrayInputStream(content)));
+      info.setContent(createResource(s3, s3ObjectKey, size));
       return info;
     } catch (Exception e) {
       LOG.error("Error saving file to S3", e);
+      onError(e);
       throw e;
     }
   }
 
+  @Override
+  public final S prepareReplica(String originalName) {
+    // the key is reserved by generating it, conditional writes protect it from being overwritten
+    final S info = getNewAbstractS3StorageInfo(null, getNewObjectKey());
+    info.setAvailable(false);
+    info.setPending(true);
+    return info;
+  }
+
+  @Override
+  public final void writeReplica(
+      S abstractInfo, @Nullable String mimeType, InputStream content, long length)
+      throws IOException {
+    AbstractS3StorageInfo<F, ID, S> info = (AbstractS3StorageInfo<F, ID, S>) abstractInfo;
+    S3Client s3 = clientProvider.getClient();
+    try {
+      bucketValidator.ensureAccess();
+      long size;
+      try {
+        size =
+            upload(s3, info.getS3ObjectKey(), mimeType, readHead(content, length), content, length);
+        LOG.info("S3: Replica {} has been uploaded successfully", info.getS3ObjectKey());
+      } catch (S3Exception e) {
+        if (!config.isConditionalWrites() || !isKeyConflict(e)) {
+          throw e;
+        }
+        // the key is only used by this replica, so an earlier attempt has already written it
+        LOG.info("S3: Replica {} has already been uploaded", info.getS3ObjectKey());
+        size = length;
+      }
+      abstractInfo.setContent(createResource(s3, info.getS3ObjectKey(), size));
+      abstractInfo.setPending(false);
+      abstractInfo.setAvailable(true);
+    } catch (Exception e) {
+      LOG.error("Error writing replica to S3", e);
+      onError(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Reads the content of a single PUT into memory. Content of known length that is uploaded in
+   * parts is not read, as the multipart upload buffers its parts itself. Content of unknown length
+   * is buffered up to {@code multipartThreshold} to decide between both, so each such upload holds
+   * up to that many bytes in addition to the parts of a multipart upload.
+   */
+  private byte[] readHead(InputStream content, long length) throws IOException {
+    long threshold = config.getMultipartThreshold().toBytes();
+    if (length >= threshold) {
+      return new byte[0];
+    }
+    // one byte more than announced reveals content that is too long
+    return content.readNBytes((int) (length >= 0 ? Math.min(threshold, length + 1) : threshold));
+  }
+
+  private boolean isSinglePut(byte[] head, long length) {
+    long threshold = config.getMultipartThreshold().toBytes();
+    return length >= 0 ? length < threshold : head.length < threshold;
+  }
+
+  /**
+   * Uploads the content under the given key. Small files are sent with a single PUT, larger or
+   * unknown ones as multipart upload.
+   *
+   * @param head the first bytes of the content, already read from {@code rest}
+   * @return number of uploaded bytes
+   */
+  private long upload(
+      S3Client s3,
+      String s3ObjectKey,
+      @Nullable String mimeType,
+      byte[] head,
+      InputStream rest,
+      long length)
+      throws IOException {
+    if (!isSinglePut(head, length)) {
+      return new S3MultipartUpload(s3, clientProvider.getTransferExecutor(), config, s3ObjectKey)
+          .upload(new SequenceInputStream(new ByteArrayInputStream(head), rest), mimeType, length);
+    }
+    if (length >= 0 && head.length != length) {
+      throw new IOException("Expected " + length + " bytes but received " + head.length);
+    }
+    PutObjectRequest.Builder putObjectRequest =
+        PutObjectRequest.builder()
+            .bucket(config.getBucketName())
+            .key(s3ObjectKey)
+            .contentType(mimeType)
+            .contentLength((long) head.length);
+    if (config.isConditionalWrites()) {
+      putObjectRequest.ifNoneMatch("*");
+    }
+    PutObjectResponse putObjectResponse =
+        s3.putObject(putObjectRequest.build(), RequestBody.fromBytes(head));
+    LOG.debug("S3: PutObjectResponse: {}", putObjectResponse);
+    return head.length;
+  }
+
+  private static boolean isKeyConflict(S3Exception e) {
+    // 412 Precondition Failed if the key exists, 409 if a concurrent conditional write won
+    return e.statusCode() == 412 || e.statusCode() == 409;
+  }
+
+  /** Returns a new object key. Keys are generated locally, the bucket is not consulted. */
+  protected String getNewObjectKey() {
+    return keyGenerator.newObjectKey();
+  }
+
   protected abstract <SI extends AbstractS3StorageInfo<F, ID, S>> SI getNewAbstractS3StorageInfo(
       F file, String s3ObjectKey);
 
+  @Override
+  public final S referenceFile(S abstractInfo) {
+    AbstractS3StorageInfo<F, ID, S> info = (AbstractS3StorageInfo<F, ID, S>) abstractInfo;
+    return getNewAbstractS3StorageInfo(null, info.getS3ObjectKey());
+  }
+
   @Override
   public final boolean deleteFile(S abstractInfo) {
     AbstractS3StorageInfo<F, ID, S> info = (AbstractS3StorageInfo<F, ID, S>) abstractInfo;
-    try (S3Client s3 = getClient()) {
-      // ensure bucket exists
-      testBucketAccess(s3, config.getBucketName());
+    S3Client s3 = clientProvider.getClient();
+    try {
+      // ensure bucket exists, cached between validation intervals
+      bucketValidator.ensureAccess();
 
       LOG.info("S3: Deleting object {}", info.getS3ObjectKey());
       DeleteObjectsRequest deleteObjectsRequest =
@@ -172,6 +238,7 @@ public abstract class AbstractS3StorageService<
       return true;
     } catch (Exception e) {
       LOG.error("Error deleting file from S3", e);
+      onError(e);
       throw e;
     }
   }
@@ -179,49 +246,47 @@ public abstract class AbstractS3StorageService<
   @Override
   public final S loadFile(S abstractInfo) {
     AbstractS3StorageInfo<F, ID, S> info = (AbstractS3StorageInfo<F, ID, S>) abstractInfo;
-    try (S3Client s3 = getClient()) {
-      // ensure bucket exists
-      testBucketAccess(s3, config.getBucketName());
-      GetObjectRequest objectRequest =
-          GetObjectRequest.builder()
-              .key(info.getS3ObjectKey())
-              .bucket(config.getBucketName())
-              .build();
-      info.setContent(new ByteArrayResource(s3.getObjectAsBytes(objectRequest).asByteArray()));
+    try {
+      // ensure bucket exists, cached between validation intervals
+      bucketValidator.ensureAccess();
+      // the object is streamed from S3 once the content is read
+      long contentLength = info.getFile() != null ? info.getFile().getSize() : -1;
+      info.setContent(
+          createResource(clientProvider.getClient(), info.getS3ObjectKey(), contentLength));
       return (S) info;
     } catch (Exception e) {
       LOG.error("Error loading file from S3", e);
+      onError(e);
       throw e;
     }
   }
 
+  // Large objects of known size are fetched as concurrent range requests if enabled.
+  private S3ObjectResource createResource(S3Client s3, String s3ObjectKey, long contentLength) {
+    if (config.isParallelDownload()
+        && contentLength >= config.getParallelDownloadThreshold().toBytes()) {
+      return new S3ParallelObjectResource(
+          s3,
+          config.getBucketName(),
+          s3ObjectKey,
+          contentLength,
+          bucketValidator::onError,
+          clientProvider.getTransferExecutor(),
+          (int) config.getDownloadPartSize().toBytes(),
+          config.getDownloadConcurrency());
+    }
+    return new S3ObjectResource(
+        s3, config.getBucketName(), s3ObjectKey, contentLength, bucketValidator::onError);
+  }
+
   @Override
   public Providers getType() {
     return Providers.S3;
   }
 
-  /** Checks if bucket exists and user has permission to access it */
-  public void testBucketAccess(S3Client s3, String bucketName) {
-    // Try to access bucket using a HeadBucketRequest which is a fast, non-invasive operation.
-    HeadBucketRequest headBucketRequest = HeadBucketRequest.builder().bucket(bucketName).build();
-    HeadBucketResponse headBucketResponse = s3.headBucket(headBucketRequest);
-    LOG.debug("S3: HeadBucketResponse: {}", headBucketResponse.responseMetadata());
-    LOG.debug("S3: Bucket {} exists", bucketName);
-  }
-
-  /** Returns a new unique object key that does not exist in the bucket */
-  private String getNewObjectKey(S3Client s3, @NotNull @NotBlank String bucketName) {
-    ListObjectsV2Request listObjectsV2Request =
-        ListObjectsV2Request.builder().bucket(bucketName).build();
-    ListObjectsV2Response listObjectsV2Response = s3.listObjectsV2(listObjectsV2Request);
-    LOG.debug(
-        "S3: Bucket {} contains {} object keys", bucketName, listObjectsV2Response.keyCount());
-    List<String> existingKeys =
-        listObjectsV2Response.contents().stream().map(S3Object::key).toList();
-    String s3ObjectKey;
-    do {
-      s3ObjectKey = UUID.randomUUID().toString();
-    } while (existingKeys.contains(s3ObjectKey));
-    return s3ObjectKey;
+  private void onError(Exception e) {
+    if (e instanceof S3Exception s3Exception) {
+      bucketValidator.onError(s3Exception);
+    }
   }
 }
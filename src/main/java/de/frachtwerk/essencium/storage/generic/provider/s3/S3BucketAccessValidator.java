@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Checks that the configured bucket exists and is accessible. The check is done once at startup and
+ * then cached for {@link S3StorageConfiguration#getBucketValidationInterval()}. Errors indicating a
+ * missing bucket or revoked permissions invalidate the cached result immediately.
+ */
+@Service
+@RequiredArgsConstructor
+public class S3BucketAccessValidator {
+  private static final Logger LOG = LoggerFactory.getLogger(S3BucketAccessValidator.class);
+  private static final Set<String> BUCKET_ERROR_CODES =
+      Set.of("NoSuchBucket", "AccessDenied", "AllAccessDisabled");
+
+  private final S3StorageConfiguration config;
+  private final S3ClientProvider clientProvider;
+
+  // System.nanoTime() of the last successful validation, 0 if not validated
+  private volatile long validatedAt;
+  // number of finished validations and the error of the last one, if it failed
+  private volatile long validations;
+  private S3Exception failure;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void init() {
+    if (config.isActive()) {
+      try {
+        validate();
+        LOG.info("S3: Access to bucket {} validated", config.getBucketName());
+      } catch (S3Exception e) {
+        LOG.error("S3: Bucket {} is not accessible", config.getBucketName(), e);
+      }
+    }
+  }
+
+  /** Validates bucket access unless a successful validation is still within its interval. */
+  public void ensureAccess() {
+    long seen = validations;
+    if (!isValid()) {
+      revalidate(seen);
+    }
+  }
+
+  private boolean isValid() {
+    long validated = validatedAt;
+    return validated != 0
+        && System.nanoTime() - validated < config.getBucketValidationInterval().toNanos();
+  }
+
+  /**
+   * Validates bucket access unless another validation has finished since {@code seen} was read. So
+   * concurrent callers waiting for the lock share the result of the first one instead of sending a
+   * HeadBucket request each.
+   */
+  private synchronized void revalidate(long seen) {
+    if (validations != seen) {
+      if (failure != null) {
+        throw failure;
+      }
+      if (isValid()) {
+        return;
+      }
+    }
+    validate();
+  }
+
+  /** Checks if bucket exists and user has permission to access it */
+  public synchronized void validate() {
+    try {
+      // Try to access bucket using a HeadBucketRequest which is a fast, non-invasive operation.
+      HeadBucketRequest headBucketRequest =
+          HeadBucketRequest.builder().bucket(config.getBucketName()).build();
+      HeadBucketResponse headBucketResponse =
+          clientProvider.getClient().headBucket(headBucketRequest);
+      LOG.debug("S3: HeadBucketResponse: {}", headBucketResponse.responseMetadata());
+      LOG.debug("S3: Bucket {} exists", config.getBucketName());
+      validatedAt = System.nanoTime();
+      failure = null;
+    } catch (S3Exception e) {
+      validatedAt = 0;
+      failure = e;
+      throw e;
+    } finally {
+      validations++;
+    }
+  }
+
+  /**
+   * Re-checks bucket access right away if the given error of an S3 operation indicates that the
+   * bucket is gone or no longer accessible.
+   */
+  public void onError(S3Exception e) {
+    String errorCode = e.awsErrorDetails() != null ? e.awsErrorDetails().errorCode() : null;
+    if (errorCode != null && BUCKET_ERROR_CODES.contains(errorCode)) {
+      LOG.warn("S3: Operation failed with {}, re-validating bucket access", errorCode);
+      long seen = validations;
+      try {
+        revalidate(seen);
+      } catch (S3Exception validationError) {
+        LOG.error("S3: Bucket {} is not accessible", config.getBucketName(), validationError);
+      }
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import jakarta.annotation.Nullable;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.*;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+/**
+ * Holds the {@link S3Client} shared by all S3 storage services. The client, its HTTP connection
+ * pool and its credentials provider are created on first use and closed when the application
+ * context shuts down, as is the executor used for concurrent part transfers.
+ */
+@Service
+@RequiredArgsConstructor
+public class S3ClientProvider implements InitializingBean, DisposableBean {
+  private static final Logger LOG = LoggerFactory.getLogger(S3ClientProvider.class);
+
+  private final S3StorageConfiguration config;
+
+  private volatile S3Client client;
+  private ExecutorService transferExecutor;
+
+  public S3Client getClient() {
+    S3Client s3 = client;
+    if (s3 == null) {
+      synchronized (this) {
+        s3 = client;
+        if (s3 == null) {
+          s3 = createClient();
+          client = s3;
+        }
+      }
+    }
+    return s3;
+  }
+
+  /**
+   * Returns the executor for concurrent part transfers. It has as many threads as the client has
+   * connections, so queued parts wait for a thread instead of a connection.
+   */
+  public synchronized ExecutorService getTransferExecutor() {
+    if (transferExecutor == null) {
+      transferExecutor =
+          Executors.newFixedThreadPool(
+              config.getMaxConnections(),
+              Thread.ofPlatform().name("s3-transfer-", 0).daemon(true).factory());
+    }
+    return transferExecutor;
+  }
+
+  /** Rejects a configuration that would let every multipart upload fail on completion. */
+  @Override
+  public void afterPropertiesSet() {
+    if (config.isActive()
+        && config.getMultipartPartSize().compareTo(S3MultipartUpload.MIN_PART_SIZE) < 0) {
+      throw new IllegalStateException(
+          "file.storage.s3.multipartPartSize must be at least "
+              + S3MultipartUpload.MIN_PART_SIZE
+              + " but is "
+              + config.getMultipartPartSize());
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (transferExecutor != null) {
+      transferExecutor.shutdownNow();
+      transferExecutor = null;
+    }
+    if (client != null) {
+      LOG.debug("Closing S3 client");
+      client.close();
+      client = null;
+    }
+  }
+
+  // Create the S3Client object.
+  private S3Client createClient() {
+    LOG.debug("Creating S3 client with a pool of {} connections", config.getMaxConnections());
+    S3ClientBuilder builder =
+        S3Client.builder()
+            .httpClientBuilder(
+                ApacheHttpClient.builder()
+                    .maxConnections(config.getMaxConnections())
+                    .connectionTimeout(config.getConnectionTimeout())
+                    .connectionAcquisitionTimeout(config.getConnectionAcquisitionTimeout())
+                    .socketTimeout(config.getSocketTimeout())
+                    .connectionMaxIdleTime(config.getConnectionMaxIdleTime())
+                    .connectionTimeToLive(config.getConnectionTimeToLive())
+                    .tcpKeepAlive(config.isTcpKeepAlive())
+                    .useIdleConnectionReaper(config.isUseIdleConnectionReaper()))
+            .credentialsProvider(getCredentialProvider())
+            .region(getRegion(config.getRegion()));
+
+    if (StringUtils.isNotBlank(config.getEndpointUrl())) {
+      LOG.debug("Using custom endpoint: {}", config.getEndpointUrl());
+      builder.endpointOverride(URI.create(config.getEndpointUrl())).forcePathStyle(true);
+    }
+    return builder.build();
+  }
+
+  // Creates a credentials provider.
+  private AwsCredentialsProvider getCredentialProvider() {
+    /* according to https://sdk.amazonaws.com/java/api/latest/software/amazon/awssdk/auth/credentials/DefaultCredentialsProvider.html DefaultCredentialsProvider covers most cases of authentication.
+
+        AWS credentials provider chain that looks for credentials in this order:
+
+        1. Java System Properties - aws.accessKeyId and aws.secretAccessKey
+        2. Environment Variables - AWS_ACCESS_KEY_ID and AWS_SECRET_ACCESS_KEY
+        3. Web Identity Token credentials from system properties or environment variables
+        4. Credential profiles file at the default location (~/.aws/credentials) shared by all AWS SDKs and the AWS CLI
+        5. Credentials delivered through the Amazon EC2 container service if "AWS_CONTAINER_CREDENTIALS_RELATIVE_URI" environment variable is set and security manager has permission to access the variable,
+        6. Instance profile credentials delivered through the Amazon EC2 metadata service
+
+        So if no Custom Endpoint and AccessKey and SecretKey are set, the DefaultCredentialsProvider should be sufficient.
+    */
+    if (StringUtils.isNotBlank(config.getEndpointUrl())
+        && StringUtils.isNotBlank(config.getAccessKey())
+        && StringUtils.isNotBlank(config.getSecretKey())) {
+      LOG.debug("Using custom credentials provider");
+      AwsCredentials awsCredentials =
+          AwsBasicCredentials.create(config.getAccessKey(), config.getSecretKey());
+      return StaticCredentialsProvider.create(awsCredentials);
+    } else {
+      LOG.debug("Using default credentials provider");
+      // do not use DefaultCredentialsProvider.create() as it does not create a new instance.
+      // Credentials are resolved lazily and cached by the provider for the lifetime of the client.
+      return DefaultCredentialsProvider.builder().build();
+    }
+  }
+
+  private Region getRegion(@Nullable String region) {
+    if (StringUtils.isNotBlank(region)) return Region.of(region);
+    else return Region.EU_CENTRAL_1;
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.*;
+
+/**
+ * Uploads a stream of unknown or large size as S3 multipart upload. Parts are uploaded concurrently
+ * on the given executor, and at most {@code multipartConcurrency} parts are held in memory at a
+ * time. A failed part is retried on its own; a failed upload is aborted so that no orphaned parts
+ * are left in the bucket.
+ */
+class S3MultipartUpload {
+  // limits of S3 multipart uploads, except for the last part which may be smaller
+  static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+  static final int MAX_PARTS = 10_000;
+
+  private static final Logger LOG = LoggerFactory.getLogger(S3MultipartUpload.class);
+  private static final long RETRY_BACKOFF_MILLIS = 200;
+
+  private final S3Client s3;
+  private final ExecutorService executor;
+  private final S3StorageConfiguration config;
+  private final String key;
+
+  S3MultipartUpload(
+      S3Client s3, ExecutorService executor, S3StorageConfiguration config, String key) {
+    this.s3 = s3;
+    this.executor = executor;
+    this.config = config;
+    this.key = key;
+  }
+
+  /**
+   * @param expectedLength number of bytes the stream must provide, or a negative value if unknown
+   * @return number of uploaded bytes
+   */
+  long upload(InputStream content, String contentType, long expectedLength) throws IOException {
+    String uploadId =
+        s3.createMultipartUpload(
+                CreateMultipartUploadRequest.builder()
+                    .bucket(config.getBucketName())
+                    .key(key)
+                    .contentType(contentType)
+                    .build())
+            .uploadId();
+    LOG.debug("S3: Started multipart upload {} for {}", uploadId, key);
+    List<Future<CompletedPart>> futures = new ArrayList<>();
+    try {
+      int partSize = partSize(expectedLength);
+      // a permit is taken before a part is read and released once it has been uploaded
+      Semaphore buffers = new Semaphore(Math.max(1, config.getMultipartConcurrency()));
+      long total = 0;
+      byte[] part;
+      do {
+        buffers.acquire();
+        failFast(futures);
+        part = content.readNBytes(partSize);
+        if (part.length == 0 && !futures.isEmpty()) {
+          buffers.release();
+          break;
+        }
+        int partNumber = futures.size() + 1;
+        if (partNumber > MAX_PARTS) {
+          throw new IOException(
+              "Upload of "
+                  + key
+                  + " exceeds "
+                  + MAX_PARTS
+                  + " parts of "
+                  + partSize
+                  + " bytes, increase multipartPartSize");
+        }
+        byte[] data = part;
+        futures.add(
+            executor.submit(
+                () -> {
+                  try {
+                    return uploadPart(uploadId, partNumber, data);
+                  } finally {
+                    buffers.release();
+                  }
+                }));
+        total += part.length;
+      } while (part.length == partSize);
+
+      if (expectedLength >= 0 && total != expectedLength) {
+        throw new IOException("Expected " + expectedLength + " bytes but received " + total);
+      }
+
+      List<CompletedPart> parts = new ArrayList<>(futures.size());
+      for (Future<CompletedPart> future : futures) {
+        parts.add(await(future));
+      }
+      CompleteMultipartUploadRequest.Builder complete =
+          CompleteMultipartUploadRequest.builder()
+              .bucket(config.getBucketName())
+              .key(key)
+              .uploadId(uploadId)
+              .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build());
+      if (config.isConditionalWrites()) {
+        complete.ifNoneMatch("*");
+      }
+      s3.completeMultipartUpload(complete.build());
+      LOG.debug("S3: Completed multipart upload of {} with {} parts", key, parts.size());
+      return total;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abort(uploadId, futures);
+      throw new InterruptedIOException("Multipart upload of " + key + " was interrupted");
+    } catch (IOException | RuntimeException e) {
+      abort(uploadId, futures);
+      throw e;
+    }
+  }
+
+  // Raises the configured part size if a stream of known length would need too many parts.
+  private int partSize(long expectedLength) {
+    long partSize = config.getMultipartPartSize().toBytes();
+    if (expectedLength >= 0) {
+      partSize = Math.max(partSize, Math.ceilDiv(expectedLength, MAX_PARTS));
+    }
+    return Math.toIntExact(partSize);
+  }
+
+  // Uploads a single part, retrying transient failures without touching the other parts.
+  private CompletedPart uploadPart(String uploadId, int partNumber, byte[] data)
+      throws InterruptedException {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        UploadPartResponse response =
+            s3.uploadPart(
+                UploadPartRequest.builder()
+                    .bucket(config.getBucketName())
+                    .key(key)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .contentLength((long) data.length)
+                    .build(),
+                RequestBody.fromBytes(data));
+        return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+      } catch (SdkException e) {
+        if (!isRetryable(e) || attempt >= config.getMultipartMaxAttempts()) {
+          throw e;
+        }
+        LOG.warn(
+            "S3: Upload of part {} of {} failed (attempt {}), retrying",
+            partNumber,
+            key,
+            attempt,
+            e);
+        Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 1));
+      }
+    }
+  }
+
+  private static boolean isRetryable(SdkException e) {
+    if (e instanceof S3Exception s3Exception) {
+      return s3Exception.statusCode() >= 500 || s3Exception.statusCode() == 429;
+    }
+    // connection and timeout errors
+    return e instanceof SdkClientException;
+  }
+
+  // Stops reading the stream as soon as one of the parts has failed for good.
+  private static void failFast(List<Future<CompletedPart>> futures)
+      throws IOException, InterruptedException {
+    for (Future<CompletedPart> future : futures) {
+      if (future.isDone()) {
+        await(future);
+      }
+    }
+  }
+
+  private static CompletedPart await(Future<CompletedPart> future)
+      throws IOException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof InterruptedException) {
+        throw new InterruptedIOException("Part upload was interrupted");
+      }
+      throw new IOException("Part upload failed", e.getCause());
+    }
+  }
+
+  private void abort(String uploadId, List<Future<CompletedPart>> futures) {
+    futures.forEach(future -> future.cancel(true));
+    try {
+      s3.abortMultipartUpload(
+          AbortMultipartUploadRequest.builder()
+              .bucket(config.getBucketName())
+              .key(key)
+              .uploadId(uploadId)
+              .build());
+      LOG.debug("S3: Aborted multipart upload {} of {}", uploadId, key);
+    } catch (SdkException e) {
+      LOG.error("S3: Could not abort multipart upload {} of {}", uploadId, key, e);
+    }
+  }
+}
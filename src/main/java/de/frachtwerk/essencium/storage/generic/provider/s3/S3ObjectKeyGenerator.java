@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Creates object keys for new S3 objects without consulting the bucket.
+ *
+ * <p>Keys are built from {@link S3StorageConfiguration#getKeyTemplate()}. Supported placeholders
+ * are {@code {uuid}} (time-ordered UUID version 7), {@code {yyyy}}, {@code {MM}} and {@code {dd}}
+ * (current UTC date).
+ */
+@RequiredArgsConstructor
+public class S3ObjectKeyGenerator {
+  private static final SecureRandom RANDOM = new SecureRandom();
+
+  private final S3StorageConfiguration config;
+  private final Clock clock = Clock.systemUTC();
+
+  public String newObjectKey() {
+    LocalDate today = LocalDate.now(clock);
+    return config
+        .getKeyTemplate()
+        .replace("{uuid}", timeOrderedUuid(clock.millis()).toString())
+        .replace("{yyyy}", String.format("%04d", today.getYear()))
+        .replace("{MM}", String.format("%02d", today.getMonthValue()))
+        .replace("{dd}", String.format("%02d", today.getDayOfMonth()));
+  }
+
+  /** Creates a UUID version 7 (RFC 9562) that sorts by its creation time. */
+  static UUID timeOrderedUuid(long epochMillis) {
+    byte[] random = new byte[10];
+    RANDOM.nextBytes(random);
+    long msb = (epochMillis & 0xFFFFFFFFFFFFL) << 16;
+    msb |= 0x7000L; // version 7
+    msb |= ((random[0] & 0x0FL) << 8) | (random[1] & 0xFFL);
+    long lsb = 0x8000000000000000L; // IETF variant
+    lsb |= (random[2] & 0x3FL) << 56;
+    for (int i = 3; i < 10; i++) {
+      lsb |= (random[i] & 0xFFL) << (8 * (9 - i));
+    }
+    return new UUID(msb, lsb);
+  }
+}
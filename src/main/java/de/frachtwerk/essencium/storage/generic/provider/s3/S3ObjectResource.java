@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import de.frachtwerk.essencium.storage.generic.provider.RangeReadableResource;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+import org.springframework.core.io.AbstractResource;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * Lazy {@link org.springframework.core.io.Resource} of an S3 object. No request is sent until
+ * {@link #getInputStream()} is called, and every call opens a new streaming GET request. The object
+ * is never buffered in memory.
+ */
+public class S3ObjectResource extends AbstractResource implements RangeReadableResource {
+  private final S3Client s3;
+  private final String bucketName;
+  private final String key;
+  private final long contentLength;
+  private final Consumer<S3Exception> errorHandler;
+
+  /**
+   * @param contentLength size of the object if known, otherwise a negative value
+   * @param errorHandler called with S3 errors raised while opening the object
+   */
+  public S3ObjectResource(
+      S3Client s3,
+      String bucketName,
+      String key,
+      long contentLength,
+      Consumer<S3Exception> errorHandler) {
+    this.s3 = s3;
+    this.bucketName = bucketName;
+    this.key = key;
+    this.contentLength = contentLength;
+    this.errorHandler = errorHandler;
+  }
+
+  public String getBucketName() {
+    return bucketName;
+  }
+
+  public String getKey() {
+    return key;
+  }
+
+  /** Existence is verified when the object is opened, not upfront. */
+  @Override
+  public boolean exists() {
+    return true;
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return open(GetObjectRequest.builder().bucket(bucketName).key(key).build());
+  }
+
+  /** Opens a ranged GET request, so only the requested bytes are transferred. */
+  @Override
+  public InputStream getInputStream(long position, long count) throws IOException {
+    if (count <= 0) {
+      return InputStream.nullInputStream();
+    }
+    return open(
+        GetObjectRequest.builder()
+            .bucket(bucketName)
+            .key(key)
+            .range("bytes=" + position + "-" + (position + count - 1))
+            .build());
+  }
+
+  protected InputStream open(GetObjectRequest request) throws IOException {
+    try {
+      return new ObjectInputStream(s3.getObject(request));
+    } catch (NoSuchKeyException e) {
+      throw new FileNotFoundException(getDescription() + " does not exist");
+    } catch (S3Exception e) {
+      errorHandler.accept(e);
+      throw new IOException("Could not open " + getDescription(), e);
+    }
+  }
+
+  @Override
+  public String getDescription() {
+    return "S3 object [" + bucketName + "/" + key + "]";
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || (other instanceof S3ObjectResource that
+            && bucketName.equals(that.bucketName)
+            && key.equals(that.key));
+  }
+
+  @Override
+  public int hashCode() {
+    return bucketName.hashCode() * 31 + key.hashCode();
+  }
+
+  /**
+   * Aborts the underlying connection if the stream is closed before the end of the object was
+   * reached, otherwise the HTTP client would drain the remaining bytes to reuse the connection. The
+   * end is reached once the content length of the response has been read, so a reader that reads
+   * exactly the requested range keeps the connection in the pool.
+   */
+  private static class ObjectInputStream extends FilterInputStream {
+    private final ResponseInputStream<GetObjectResponse> response;
+    private final Long length;
+    private long bytesRead;
+    private boolean eof;
+
+    ObjectInputStream(ResponseInputStream<GetObjectResponse> response) {
+      super(response);
+      this.response = response;
+      this.length = response.response().contentLength();
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      count(b < 0 ? -1 : 1);
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      count(n);
+      return n;
+    }
+
+    private void count(int n) {
+      if (n < 0) {
+        eof = true;
+      } else {
+        bytesRead += n;
+        eof |= length != null && bytesRead >= length;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!eof) {
+        response.abort();
+      }
+      super.close();
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * {@link S3ObjectResource} of a large object that is fetched as concurrent byte-range GET requests.
+ * The parts are handed out in order, and at most {@code concurrency} parts are requested or
+ * buffered at a time.
+ */
+public class S3ParallelObjectResource extends S3ObjectResource {
+  private final ExecutorService executor;
+  private final int partSize;
+  private final int concurrency;
+
+  /**
+   * @param contentLength size of the object, must be known to split it into ranges
+   * @param errorHandler called with S3 errors raised while opening the object
+   */
+  public S3ParallelObjectResource(
+      S3Client s3,
+      String bucketName,
+      String key,
+      long contentLength,
+      Consumer<S3Exception> errorHandler,
+      ExecutorService executor,
+      int partSize,
+      int concurrency) {
+    super(s3, bucketName, key, contentLength, errorHandler);
+    this.executor = executor;
+    this.partSize = partSize;
+    this.concurrency = Math.max(1, concurrency);
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return new RangeInputStream();
+  }
+
+  // Reads a single part, the returned array is shorter than requested only at the end of the
+  // object.
+  private byte[] readPart(long position, int length) throws IOException {
+    try (InputStream in = getInputStream(position, length)) {
+      byte[] part = in.readNBytes(length);
+      if (part.length != length) {
+        throw new IOException(
+            "Expected " + length + " bytes at " + position + " but received " + part.length);
+      }
+      return part;
+    }
+  }
+
+  /** Keeps a window of parts in flight and serves them in order of their position. */
+  private class RangeInputStream extends InputStream {
+    private final Deque<Future<byte[]>> window = new ArrayDeque<>();
+    private long nextPosition;
+    private byte[] current = new byte[0];
+    private int offset;
+    private boolean closed;
+
+    RangeInputStream() {
+      while (window.size() < concurrency && requestNextPart()) {
+        // fill the window
+      }
+    }
+
+    private boolean requestNextPart() {
+      if (nextPosition >= contentLength()) {
+        return false;
+      }
+      long position = nextPosition;
+      int length = (int) Math.min(partSize, contentLength() - position);
+      window.addLast(executor.submit(() -> readPart(position, length)));
+      nextPosition += length;
+      return true;
+    }
+
+    // Makes the next part current once the current one is consumed, returns false at the end.
+    private boolean ensureData() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      while (offset >= current.length) {
+        Future<byte[]> next = window.pollFirst();
+        if (next == null) {
+          return false;
+        }
+        current = await(next);
+        offset = 0;
+        requestNextPart();
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return ensureData() ? current[offset++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!ensureData()) {
+        return -1;
+      }
+      int n = Math.min(len, current.length - offset);
+      System.arraycopy(current, offset, b, off, n);
+      offset += n;
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return current.length - offset;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+      window.forEach(future -> future.cancel(true));
+      window.clear();
+    }
+
+    private byte[] await(Future<byte[]> future) throws IOException {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new InterruptedIOException("Download of " + getDescription() + " was interrupted");
+      } catch (ExecutionException e) {
+        close();
+        if (e.getCause() instanceof IOException cause) {
+          throw cause;
+        }
+        throw new IOException("Could not read " + getDescription(), e.getCause());
+      }
+    }
+  }
+}
@@ -21,9 +21,11 @@ package de.frachtwerk.essencium.storage.generic.provider.s3;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 @Component
 @ConfigurationProperties("file.storage.s3")
@@ -35,4 +37,35 @@ public class S3StorageConfiguration {
   @NotNull @NotBlank private String bucketName;
   private String accessKey;
   private String secretKey;
+
+  // object keys of new uploads, see S3ObjectKeyGenerator for supported placeholders
+  private String keyTemplate = "{uuid}";
+  // reject uploads that would overwrite an existing object (If-None-Match: *)
+  private boolean conditionalWrites = true;
+  // how long a successful bucket access check is trusted before it is repeated
+  private Duration bucketValidationInterval = Duration.ofMinutes(5);
+
+  // uploads above the threshold are sent as multipart upload
+  private DataSize multipartThreshold = DataSize.ofMegabytes(16);
+  private DataSize multipartPartSize = DataSize.ofMegabytes(8);
+  // parts uploaded in parallel per upload, which also bounds the parts buffered in memory
+  private int multipartConcurrency = 4;
+  private int multipartMaxAttempts = 3;
+
+  // downloads of objects above the threshold are fetched as concurrent range requests
+  private boolean parallelDownload = false;
+  private DataSize parallelDownloadThreshold = DataSize.ofMegabytes(64);
+  private DataSize downloadPartSize = DataSize.ofMegabytes(8);
+  // range requests in flight per download, which also bounds the parts buffered in memory
+  private int downloadConcurrency = 4;
+
+  // HTTP connection pool of the shared S3 client
+  private int maxConnections = 50;
+  private Duration connectionTimeout = Duration.ofSeconds(2);
+  private Duration connectionAcquisitionTimeout = Duration.ofSeconds(10);
+  private Duration socketTimeout = Duration.ofSeconds(30);
+  private Duration connectionMaxIdleTime = Duration.ofSeconds(60);
+  private Duration connectionTimeToLive = Duration.ZERO;
+  private boolean tcpKeepAlive = true;
+  private boolean useIdleConnectionReaper = true;
 }
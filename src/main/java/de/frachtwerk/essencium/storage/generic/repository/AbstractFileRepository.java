@@ -22,7 +22,23 @@ package de.frachtwerk.essencium.storage.generic.repository;
 import de.frachtwerk.essencium.backend.repository.BaseRepository;
 import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import java.io.Serializable;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.hibernate.jpa.SpecHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.NoRepositoryBean;
 
 @NoRepositoryBean
@@ -30,4 +46,77 @@ public interface AbstractFileRepository<
         F extends AbstractFile<F, ID, S>,
         ID extends Serializable,
         S extends AbstractStorageInfo<F, ID, S>>
-    extends BaseRepository<F, ID> {}
+    extends BaseRepository<F, ID> {
+
+  /** Returns the file with its storage infos, loaded with a single query. */
+  @EntityGraph(attributePaths = "storageInfos")
+  Optional<F> findWithStorageInfosById(ID id);
+
+  /** Returns all files with their storage infos, loaded with a single query. */
+  @EntityGraph(attributePaths = "storageInfos")
+  @Query("SELECT f FROM #{#entityName} f")
+  List<F> findAllWithStorageInfos();
+
+  /** Loads the storage infos of the matching files with the same query. */
+  @Override
+  @EntityGraph(attributePaths = "storageInfos")
+  List<F> findAll(Specification<F> spec);
+
+  /** Number of rows fetched at a time by {@link #streamAll()}. */
+  String STREAM_FETCH_SIZE = "500";
+
+  /** Returns a slice of all files without counting them. */
+  Slice<F> findAllBy(Pageable pageable);
+
+  /**
+   * Streams all files from a database cursor. The files are loaded read-only and the stream must be
+   * consumed within a transaction.
+   */
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE),
+    @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+  })
+  @Query("SELECT f FROM #{#entityName} f")
+  Stream<F> streamAll();
+
+  /** Lock timeout that skips rows locked by other transactions instead of waiting for them. */
+  String SKIP_LOCKED = "-2";
+
+  /**
+   * Returns files with replicas that still have to be written and whose next attempt is due, those
+   * with the longest overdue replica first, and locks them until the end of the transaction. Files
+   * locked by another transaction, e.g. of another application instance, are skipped.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = SpecHints.HINT_SPEC_LOCK_TIMEOUT, value = SKIP_LOCKED))
+  @Query(
+      "SELECT f FROM #{#entityName} f"
+          + " WHERE EXISTS (SELECT i FROM f.storageInfos i WHERE i.pending = true"
+          + " AND COALESCE(i.nextReplicationAttempt, :now) <= :now)"
+          + " ORDER BY (SELECT MIN(COALESCE(i.nextReplicationAttempt, :now)) FROM f.storageInfos i"
+          + " WHERE i.pending = true), f.id")
+  List<F> findWithDueReplicas(Instant now, Limit limit);
+
+  /** Returns the file and locks it until the end of the transaction. */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT f FROM #{#entityName} f WHERE f.id = :id")
+  Optional<F> findForUpdateById(ID id);
+
+  /**
+   * Returns the first files with the given content hash, ordered by ID, and locks them until the
+   * end of the transaction. Uploads and deletions of the same content lock the same first file, so
+   * they are serialized across all instances sharing the database. Must be called within a
+   * transaction.
+   */
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT f FROM #{#entityName} f WHERE f.contentHash = :contentHash ORDER BY f.id")
+  List<F> findForUpdateByContentHash(String contentHash, Limit limit);
+
+  /** Returns the number of local storage infos that refer to the file at the given path. */
+  @Query("SELECT COUNT(i) FROM LOCAL_STORAGE_INFO i WHERE i.path = :path")
+  long countLocalStorageInfosByPath(String path);
+
+  /** Returns the number of S3 storage infos that refer to the object with the given key. */
+  @Query("SELECT COUNT(i) FROM S3_STORAGE_INFO i WHERE i.s3ObjectKey = :s3ObjectKey")
+  long countS3StorageInfosByObjectKey(String s3ObjectKey);
+}
@@ -19,20 +19,46 @@
 
 package de.frachtwerk.essencium.storage.generic.service;
 
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
 import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
+import de.frachtwerk.essencium.storage.generic.model.StorageInfoVisitor;
+import de.frachtwerk.essencium.storage.generic.provider.local.AbstractLocalStorageInfo;
+import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageInfo;
 import de.frachtwerk.essencium.storage.generic.repository.AbstractFileRepository;
 import jakarta.validation.constraints.NotNull;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CachePut;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.repository.query.FluentQuery;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @RequiredArgsConstructor
 public abstract class AbstractFileService<
@@ -45,31 +71,233 @@ public abstract class AbstractFileService<
   private final StorageServiceDispatcher<F, ID, S> dispatcher;
   private final AbstractFileRepository<F, ID, S> repository;
   private final MimeTypeHelper mimeTypeHelper;
+  private final FileStorageConfiguration config;
+  private final TransactionTemplate transactionTemplate;
 
   @Override
   public F storeFile(String name, String mimeType, byte[] fileContent) throws IOException {
-    final List<S> infos = dispatcher.saveFile(name, fileContent);
     if (StringUtils.isBlank(mimeType)) {
       LOG.debug("MIME Type not set. Attempting to determine it...");
       mimeType = mimeTypeHelper.getMimeType(name, fileContent);
     }
-    F file = getNewFile(infos, name, fileContent.length, mimeType);
+    String contentHash = null;
+    if (config.isDeduplicate()) {
+      contentHash = HexFormat.of().formatHex(newDigest().digest(fileContent));
+      Optional<F> reference = storeReference(contentHash, name, mimeType);
+      if (reference.isPresent()) {
+        return reference.get();
+      }
+    }
+    String detectedType = mimeType;
+    return store(
+        lateReplicas -> dispatcher.saveFile(name, detectedType, fileContent, lateReplicas),
+        name,
+        () -> fileContent.length,
+        mimeType,
+        contentHash);
+  }
+
+  @Override
+  public F storeFile(String name, String mimeType, InputStream fileContent, long length)
+      throws IOException {
+    CountingInputStream content = new CountingInputStream(fileContent);
+    if (StringUtils.isBlank(mimeType)) {
+      LOG.debug("MIME Type not set. Attempting to determine it...");
+      mimeType = mimeTypeHelper.getMimeType(name, content.peek(MimeTypeHelper.HEAD_SIZE));
+    }
+    if (config.isDeduplicate()) {
+      return storeDeduplicated(name, mimeType, content, length);
+    }
+    String detectedType = mimeType;
+    return store(
+        lateReplicas -> dispatcher.saveFile(name, detectedType, content, length, lateReplicas),
+        name,
+        content::getCount,
+        mimeType,
+        null);
+  }
+
+  /**
+   * Hashes the content while it is written and stores a reference instead if a file with the same
+   * content is stored already. If the dispatcher spools the upload anyway, the content is hashed
+   * while it is spooled and only written to the providers if it is new. Otherwise it is hashed
+   * while it is written to the provider, and the written replicas are deleted again if the content
+   * turns out to be stored already.
+   */
+  private F storeDeduplicated(
+      String name, String mimeType, CountingInputStream content, long length) throws IOException {
+    MessageDigest digest = newDigest();
+    InputStream hashed = new DigestInputStream(content, digest);
+    if (!dispatcher.spoolsUploads()) {
+      // a single provider is written directly and write-behind leaves no late replicas
+      List<S> infos = dispatcher.saveFile(name, mimeType, hashed, length);
+      String contentHash = HexFormat.of().formatHex(digest.digest());
+      Optional<F> reference;
+      try {
+        reference = storeReference(contentHash, name, mimeType);
+      } catch (RuntimeException e) {
+        infos.forEach(dispatcher::deleteFile);
+        throw e;
+      }
+      if (reference.isPresent()) {
+        infos.forEach(dispatcher::deleteFile);
+        return reference.get();
+      }
+      return store(lateReplicas -> infos, name, content::getCount, mimeType, contentHash);
+    }
+    Path spool = dispatcher.spool(hashed, length);
+    String contentHash = HexFormat.of().formatHex(digest.digest());
+    try {
+      Optional<F> reference = storeReference(contentHash, name, mimeType);
+      if (reference.isPresent()) {
+        deleteSpool(spool);
+        return reference.get();
+      }
+    } catch (RuntimeException e) {
+      deleteSpool(spool);
+      throw e;
+    }
+    // the dispatcher deletes the spool file once it has been written to all providers
+    long spooled = content.getCount();
+    return store(
+        lateReplicas -> dispatcher.saveFile(name, mimeType, spool, spooled, lateReplicas),
+        name,
+        () -> spooled,
+        mimeType,
+        contentHash);
+  }
+
+  /**
+   * Stores a new file that refers to the stored content of a file with the same hash, if there is
+   * one with available replicas. No bytes are written to the providers. The first file with the
+   * hash is locked in the database, so that no concurrent deletion removes the content in between.
+   */
+  private Optional<F> storeReference(String contentHash, String name, String mimeType) {
+    return transactionTemplate.execute(
+        status -> {
+          Optional<F> existing = lockContent(contentHash);
+          if (existing.isEmpty()) {
+            return Optional.empty();
+          }
+          List<S> infos =
+              existing.get().getStorageInfos().stream()
+                  .filter(i -> i.isAvailable() && !i.isPending())
+                  .map(dispatcher::referenceFile)
+                  .collect(Collectors.toCollection(ArrayList::new));
+          if (infos.isEmpty()) {
+            return Optional.empty();
+          }
+          F file = getNewFile(infos, name, existing.get().getSize(), mimeType);
+          file.setContentHash(contentHash);
+          infos.forEach(i -> i.setFile(file));
+          F saved = repository.save(file);
+          LOG.debug(
+              "Stored file {} with the content of file {}.", saved.getId(), existing.get().getId());
+          return Optional.of(saved);
+        });
+  }
+
+  // Serializes uploads and deletions of the same content, see findForUpdateByContentHash.
+  private Optional<F> lockContent(String contentHash) {
+    return repository.findForUpdateByContentHash(contentHash, Limit.of(1)).stream().findFirst();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void deleteSpool(Path spool) {
+    try {
+      Files.deleteIfExists(spool);
+    } catch (IOException e) {
+      LOG.warn("Could not delete spool file {}", spool, e);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Upload<S> {
+    List<S> store(Consumer<S> lateReplicas) throws IOException;
+  }
+
+  /**
+   * Runs the upload and saves the file with the returned replicas. Replicas finishing afterwards
+   * are attached to the file, or deleted if the upload failed or the file could not be saved.
+   */
+  private F store(
+      Upload<S> upload, String name, LongSupplier size, String mimeType, String contentHash)
+      throws IOException {
+    CompletableFuture<F> stored = new CompletableFuture<>();
+    final List<S> infos;
+    try {
+      infos = upload.store(attachLateReplicas(stored));
+    } catch (IOException | RuntimeException e) {
+      stored.completeExceptionally(e);
+      throw e;
+    }
+    F file = getNewFile(infos, name, size.getAsLong(), mimeType);
+    file.setContentHash(contentHash);
+    return save(file, infos, stored);
+  }
+
+  private F save(F file, List<S> infos, CompletableFuture<F> stored) {
     infos.forEach(i -> i.setFile(file));
-    return repository.save(file);
+    try {
+      F saved = repository.save(file);
+      stored.complete(saved);
+      return saved;
+    } catch (RuntimeException e) {
+      stored.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  /**
+   * Adds replicas that are written after the upload has returned (see {@link
+   * de.frachtwerk.essencium.storage.generic.model.WritePolicy}) to the stored file, or removes them
+   * if the file could not be stored.
+   */
+  private Consumer<S> attachLateReplicas(CompletableFuture<F> stored) {
+    AtomicReference<F> latest = new AtomicReference<>();
+    return info ->
+        stored.whenComplete(
+            (file, e) -> {
+              if (e != null) {
+                dispatcher.deleteFile(info);
+                return;
+              }
+              synchronized (latest) {
+                F current = Optional.ofNullable(latest.get()).orElse(file);
+                try {
+                  info.setFile(current);
+                  current.getStorageInfos().add(info);
+                  latest.set(repository.save(current));
+                  LOG.debug("Added late replica to file {}.", current.getId());
+                } catch (RuntimeException ex) {
+                  LOG.error("Could not add late replica to file {}.", current.getId(), ex);
+                  current.getStorageInfos().remove(info);
+                  dispatcher.deleteFile(info);
+                }
+              }
+            });
   }
 
-  protected abstract F getNewFile(List<S> infos, String name, int length, String mimeType);
+  protected abstract F getNewFile(List<S> infos, String name, long length, String mimeType);
 
   @Override
   public Optional<F> loadFile(ID id) {
-    return repository.findById(id).map(this::loadFromProviders);
+    return repository.findWithStorageInfosById(id).map(this::loadFromProviders);
   }
 
   @NotNull
   @Override
   public List<F> getAll() {
-    List<F> allEntities = repository.findAll();
-    allEntities.forEach(this::loadFromProviders);
+    List<F> allEntities = repository.findAllWithStorageInfos();
+    allEntities.forEach(this::deferContent);
     return allEntities;
   }
 
@@ -77,19 +305,56 @@ public abstract class AbstractFileService<
   @Override
   public List<F> getAllFiltered(Specification<F> specification) {
     final List<F> result = repository.findAll(specification);
-    result.forEach(this::loadFromProviders);
+    result.forEach(this::deferContent);
     return result;
   }
 
+  @NotNull
+  @Override
+  public Page<F> getAll(@NotNull Pageable pageable) {
+    return repository.findAll(pageable).map(this::deferContent);
+  }
+
+  @NotNull
+  @Override
+  public Page<F> getAllFiltered(Specification<F> specification, @NotNull Pageable pageable) {
+    return repository.findAll(specification, pageable).map(this::deferContent);
+  }
+
+  @NotNull
+  @Override
+  public Slice<F> getSlice(@NotNull Pageable pageable) {
+    return repository.findAllBy(pageable).map(this::deferContent);
+  }
+
+  @NotNull
+  @Override
+  public Slice<F> getSliceFiltered(Specification<F> specification, @NotNull Pageable pageable) {
+    return repository.findBy(specification, query -> query.slice(pageable)).map(this::deferContent);
+  }
+
+  @NotNull
+  @Override
+  public Stream<F> streamAll() {
+    return repository.streamAll().map(this::deferContent);
+  }
+
+  @NotNull
+  @Override
+  public Stream<F> streamAllFiltered(Specification<F> specification) {
+    return repository
+        .findBy(specification, FluentQuery.FetchableFluentQuery::stream)
+        .map(this::deferContent);
+  }
+
   @NotNull
   @Override
   public F loadFromProviders(@NotNull F f) {
+    // contents are opened lazily, so all replicas are loaded to choose between them on reading
     for (S info : f.getStorageInfos()) {
       if (info.isAvailable()) {
         dispatcher.loadFile(info);
-        if (info.getContent() != null) {
-          break;
-        } else if (!info.isAvailable()) {
+        if (info.getContent() == null && !info.isAvailable()) {
           markAsUnavailable(info);
         }
       }
@@ -97,9 +362,45 @@ public abstract class AbstractFileService<
     return f;
   }
 
+  /**
+   * Sets the content of the available storage infos to resources that are only loaded from the
+   * providers once they are read, so that listing files does not access the storage backends.
+   */
+  protected F deferContent(F f) {
+    for (S info : f.getStorageInfos()) {
+      if (info.isAvailable() && info.getContent() == null) {
+        info.setContent(
+            new DeferredResource(info.toString(), f.getSize(), () -> loadContent(info)));
+      }
+    }
+    return f;
+  }
+
+  private Resource loadContent(S info) throws IOException {
+    dispatcher.loadFile(info);
+    if (!info.isAvailable()) {
+      markAsUnavailable(info);
+      throw new FileNotFoundException(info + " is not available");
+    }
+    Resource content = info.getContent();
+    if (content == null || content instanceof DeferredResource) {
+      throw new FileNotFoundException("No content loaded for " + info);
+    }
+    return content;
+  }
+
+  @NotNull
+  @Override
+  public Resource getContent(@NotNull List<S> replicas) {
+    return dispatcher.getContent(replicas);
+  }
+
   @Override
   public boolean deleteFile(ID id) {
     final Optional<F> file = repository.findById(id);
+    if (file.isPresent() && file.get().getContentHash() != null) {
+      return deleteReferences(file.get());
+    }
     try {
       return file.map(
               f ->
@@ -115,11 +416,58 @@ public abstract class AbstractFileService<
     }
   }
 
+  /**
+   * Deletes a file whose content may be shared with other files. The file is removed first, then
+   * the stored content that no other storage info refers to anymore. The stored content is only
+   * removed after the transaction, as no new reference to it can be created once no file refers to
+   * it.
+   */
+  private boolean deleteReferences(F file) {
+    List<S> unreferenced =
+        transactionTemplate.execute(
+            status -> {
+              lockContent(file.getContentHash());
+              List<S> infos = List.copyOf(file.getStorageInfos());
+              repository.delete(file);
+              LOG.debug("Deleted file {}.", file.getId());
+              return infos.stream().filter(info -> countReferences(info) == 0).toList();
+            });
+    return unreferenced.stream().map(dispatcher::deleteFile).reduce(true, (acc, v) -> acc && v);
+  }
+
+  private long countReferences(S info) {
+    return info.accept(
+        new StorageInfoVisitor<Long, F, ID, S>() {
+          @Override
+          public Long visit(AbstractLocalStorageInfo<F, ID, S> info) {
+            return repository.countLocalStorageInfosByPath(info.getPath());
+          }
+
+          @Override
+          public Long visit(AbstractS3StorageInfo<F, ID, S> info) {
+            return repository.countS3StorageInfosByObjectKey(info.getS3ObjectKey());
+          }
+        });
+  }
+
   @Override
   @CachePut(value = "files", key = "#result.id")
   public void markAsUnavailable(S info) {
+    if (info.isPending()) {
+      // not written yet, the replication marks it as available
+      return;
+    }
     LOG.debug("Mark storage {} of file {} as unavailable.", info.getFile().getId(), info.getId());
     info.setAvailable(false);
-    repository.save(info.getFile());
+    // only the storage info of the current file is changed, so that a stale entity does not
+    // overwrite changes made in the meantime, e.g. by the replication
+    ID id = info.getId();
+    transactionTemplate.executeWithoutResult(
+        status ->
+            repository
+                .findForUpdateById(info.getFile().getId())
+                .flatMap(
+                    f -> f.getStorageInfos().stream().filter(i -> id.equals(i.getId())).findFirst())
+                .ifPresent(i -> i.setAvailable(false)));
   }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import de.frachtwerk.essencium.storage.generic.provider.LimitedInputStream;
+import de.frachtwerk.essencium.storage.generic.provider.RangeReadableResource;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Content of a stored file that is only loaded from its provider when it is first accessed. Until
+ * then, no storage backend is contacted, so files can be listed without touching their content.
+ */
+class DeferredResource extends AbstractResource implements RangeReadableResource {
+
+  @FunctionalInterface
+  interface Loader {
+    Resource load() throws IOException;
+  }
+
+  private final String description;
+  private final long contentLength;
+  private final Loader loader;
+  private Resource resource;
+
+  /**
+   * @param contentLength size of the content as stored in the database
+   * @param loader loads the content from the provider
+   */
+  DeferredResource(String description, long contentLength, Loader loader) {
+    this.description = description;
+    this.contentLength = contentLength;
+    this.loader = loader;
+  }
+
+  /** Loads the content from its provider unless it has been loaded before. */
+  synchronized Resource resolve() throws IOException {
+    if (resource == null) {
+      resource = loader.load();
+    }
+    return resource;
+  }
+
+  @Override
+  public boolean exists() {
+    try {
+      return resolve().exists();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public boolean isFile() {
+    try {
+      return resolve().isFile();
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public File getFile() throws IOException {
+    return resolve().getFile();
+  }
+
+  @Override
+  public long contentLength() {
+    return contentLength;
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return resolve().getInputStream();
+  }
+
+  @Override
+  public InputStream getInputStream(long position, long count) throws IOException {
+    Resource content = resolve();
+    if (content instanceof RangeReadableResource rangeReadable) {
+      return rangeReadable.getInputStream(position, count);
+    }
+    InputStream in = content.getInputStream();
+    try {
+      in.skipNBytes(position);
+    } catch (IOException e) {
+      in.close();
+      throw e;
+    }
+    return new LimitedInputStream(in, count);
+  }
+
+  @Override
+  public String getDescription() {
+    return "deferred content of " + description;
+  }
+}
@@ -23,9 +23,15 @@ import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
 import jakarta.validation.constraints.NotNull;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
@@ -52,17 +58,83 @@ public interface FileService<
    */
   F storeFile(String name, String mimeType, final byte[] fileContent) throws IOException;
 
+  /**
+   * Stores a file in the configured storages while streaming its content, e.g. from {@code
+   * MultipartFile.getInputStream()}. The content is never held in memory as a whole. The stream is
+   * not closed.
+   *
+   * @param name Name of the file
+   * @param mimeType Mime type of the file
+   * @param fileContent Content of the file as stream
+   * @param length Number of bytes of the content, or a negative value if unknown
+   * @return Storage info of the file
+   * @throws IOException If the file could not be stored
+   */
+  F storeFile(String name, String mimeType, final InputStream fileContent, long length)
+      throws IOException;
+
   Optional<F> loadFile(final ID fileId);
 
+  /**
+   * Returns all files. Their contents are loaded from the providers when they are first read, so
+   * listing files does not access the storage backends.
+   */
   @NotNull
   List<F> getAll();
 
+  /**
+   * Returns all files matching the specification. Their contents are loaded from the providers when
+   * they are first read.
+   */
   @NotNull
   List<F> getAllFiltered(Specification<F> specification);
 
+  /** Returns a page of files, including the total number of files. */
+  @NotNull
+  Page<F> getAll(@NotNull Pageable pageable);
+
+  /** Returns a page of the files matching the specification. */
+  @NotNull
+  Page<F> getAllFiltered(Specification<F> specification, @NotNull Pageable pageable);
+
+  /** Returns a slice of files. Unlike a page, no query counting all files is executed. */
+  @NotNull
+  Slice<F> getSlice(@NotNull Pageable pageable);
+
+  /** Returns a slice of the files matching the specification. */
+  @NotNull
+  Slice<F> getSliceFiltered(Specification<F> specification, @NotNull Pageable pageable);
+
+  /**
+   * Streams all files from a database cursor, fetching {@link
+   * de.frachtwerk.essencium.storage.generic.repository.AbstractFileRepository#STREAM_FETCH_SIZE}
+   * rows at a time. The stream must be consumed within a transaction and closed afterwards. Files
+   * that have been processed can be detached from the persistence context to keep its size
+   * constant.
+   */
+  @NotNull
+  Stream<F> streamAll();
+
+  /**
+   * Streams the files matching the specification from a database cursor. The stream must be
+   * consumed within a transaction and closed afterwards.
+   */
+  @NotNull
+  Stream<F> streamAllFiltered(Specification<F> specification);
+
   @NotNull
   F loadFromProviders(@NotNull F f);
 
+  /**
+   * Returns the content of a file stored in the given loaded replicas. The content is read from the
+   * replica of the currently fastest provider, the others are used if it fails.
+   *
+   * @param replicas Available storage infos of the file with their content loaded
+   * @return Content of the file
+   */
+  @NotNull
+  Resource getContent(@NotNull List<S> replicas);
+
   boolean deleteFile(ID fileId);
 
   void markAsUnavailable(S info);
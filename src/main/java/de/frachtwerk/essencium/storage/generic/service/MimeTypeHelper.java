@@ -19,24 +19,82 @@
 
 package de.frachtwerk.essencium.storage.generic.service;
 
-import java.io.IOException;
-import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Component;
 
+/**
+ * Detects the MIME type of a file in memory. The type is looked up by the file extension first, and
+ * if that is unknown, the leading bytes of the content are compared with the registered {@link
+ * MimeTypeSignature}s. {@link MimeTypeSignature} beans are checked before the built-in ones.
+ */
 @Component
 public class MimeTypeHelper {
+  /** Number of leading bytes of a stream that are used to detect its MIME type. */
+  public static final int HEAD_SIZE = 8 * 1024;
+
+  static final List<MimeTypeSignature> DEFAULT_SIGNATURES =
+      List.of(
+          MimeTypeSignature.ascii("application/pdf", "%PDF-"),
+          MimeTypeSignature.bytes("image/png", 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A),
+          MimeTypeSignature.bytes("image/jpeg", 0xFF, 0xD8, 0xFF),
+          MimeTypeSignature.ascii("image/gif", "GIF87a"),
+          MimeTypeSignature.ascii("image/gif", "GIF89a"),
+          MimeTypeSignature.ascii("image/webp", 8, "WEBP"),
+          MimeTypeSignature.ascii("image/bmp", "BM"),
+          MimeTypeSignature.bytes("image/tiff", 'I', 'I', 0x2A, 0x00),
+          MimeTypeSignature.bytes("image/tiff", 'M', 'M', 0x00, 0x2A),
+          MimeTypeSignature.bytes("image/vnd.microsoft.icon", 0x00, 0x00, 0x01, 0x00),
+          MimeTypeSignature.ascii("audio/wav", 8, "WAVE"),
+          MimeTypeSignature.ascii("audio/mpeg", "ID3"),
+          MimeTypeSignature.ascii("audio/ogg", "OggS"),
+          MimeTypeSignature.ascii("audio/flac", "fLaC"),
+          MimeTypeSignature.ascii("video/mp4", 4, "ftyp"),
+          MimeTypeSignature.bytes("video/webm", 0x1A, 0x45, 0xDF, 0xA3),
+          MimeTypeSignature.bytes("application/zip", 'P', 'K', 0x03, 0x04),
+          MimeTypeSignature.bytes("application/gzip", 0x1F, 0x8B),
+          MimeTypeSignature.bytes("application/x-7z-compressed", '7', 'z', 0xBC, 0xAF, 0x27, 0x1C),
+          MimeTypeSignature.ascii("application/vnd.rar", "Rar!"),
+          MimeTypeSignature.bytes("application/x-ole-storage", 0xD0, 0xCF, 0x11, 0xE0),
+          MimeTypeSignature.ascii("application/postscript", "%!PS"),
+          MimeTypeSignature.ascii("application/rtf", "{\\rtf"),
+          MimeTypeSignature.ascii("application/xml", "<?xml"));
+
+  private final List<MimeTypeSignature> signatures;
+
+  public MimeTypeHelper() {
+    this.signatures = DEFAULT_SIGNATURES;
+  }
+
+  @Autowired
+  public MimeTypeHelper(ObjectProvider<MimeTypeSignature> customSignatures) {
+    List<MimeTypeSignature> all = new ArrayList<>(customSignatures.orderedStream().toList());
+    all.addAll(DEFAULT_SIGNATURES);
+    this.signatures = List.copyOf(all);
+  }
 
-  public String getMimeType(String name, byte[] fileContent) throws IOException {
-    String mimeType;
-    final java.io.File folder = Files.createTempDirectory("starter").toFile();
-    folder.deleteOnExit();
-    java.io.File f = new java.io.File(folder, name);
-    try {
-      Files.write(f.toPath(), fileContent);
-      mimeType = Files.probeContentType(f.toPath());
-    } finally {
-      f.delete();
+  /**
+   * @param fileContent the content or at least its first {@link #HEAD_SIZE} bytes
+   * @return the detected MIME type or {@code null} if it is unknown
+   */
+  public String getMimeType(String name, byte[] fileContent) {
+    String byExtension =
+        MediaTypeFactory.getMediaType(name)
+            .filter(type -> !MediaType.APPLICATION_OCTET_STREAM.equalsTypeAndSubtype(type))
+            .map(MediaType::toString)
+            .orElse(null);
+    if (byExtension != null) {
+      return byExtension;
+    }
+    for (MimeTypeSignature signature : signatures) {
+      if (signature.matches(fileContent)) {
+        return signature.mimeType();
+      }
     }
-    return mimeType;
+    return null;
   }
 }
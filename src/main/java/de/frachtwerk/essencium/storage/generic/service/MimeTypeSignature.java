@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Magic bytes identifying a file format at a fixed offset of the content. Additional signatures can
+ * be registered with {@link MimeTypeHelper} by declaring them as beans.
+ *
+ * @param mimeType MIME type of content starting with the signature
+ * @param offset position of the magic bytes in the content
+ * @param magic the expected bytes
+ */
+public record MimeTypeSignature(String mimeType, int offset, byte[] magic) {
+
+  /** Signature of the given bytes at the start of the content. */
+  public static MimeTypeSignature bytes(String mimeType, int... magic) {
+    byte[] bytes = new byte[magic.length];
+    for (int i = 0; i < magic.length; i++) {
+      bytes[i] = (byte) magic[i];
+    }
+    return new MimeTypeSignature(mimeType, 0, bytes);
+  }
+
+  /** Signature of the given ASCII text at the start of the content. */
+  public static MimeTypeSignature ascii(String mimeType, String magic) {
+    return ascii(mimeType, 0, magic);
+  }
+
+  /** Signature of the given ASCII text at an offset of the content. */
+  public static MimeTypeSignature ascii(String mimeType, int offset, String magic) {
+    return new MimeTypeSignature(mimeType, offset, magic.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  public boolean matches(byte[] content) {
+    return content.length >= offset + magic.length
+        && Arrays.equals(content, offset, offset + magic.length, magic, 0, magic.length);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || (other instanceof MimeTypeSignature that
+            && offset == that.offset
+            && mimeType.equals(that.mimeType)
+            && Arrays.equals(magic, that.magic));
+  }
+
+  @Override
+  public int hashCode() {
+    return (mimeType.hashCode() * 31 + offset) * 31 + Arrays.hashCode(magic);
+  }
+
+  @Override
+  public String toString() {
+    return "MimeTypeSignature[" + mimeType + " at " + offset + "]";
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exponentially weighted moving averages of the read latency and error rate of each provider. A
+ * provider whose error rate exceeds the threshold is considered unhealthy until it has not been
+ * read from for the probe interval, then it gets a chance to recover. The latest latencies of
+ * successful reads are kept to compute percentiles.
+ */
+class ProviderStatistics {
+  private final double decay;
+  private final double errorRateThreshold;
+  private final long probeIntervalNanos;
+  private final int sampleSize;
+  private final Map<Providers, Stats> stats = new ConcurrentHashMap<>();
+  private final Map<Providers, Samples> samples = new ConcurrentHashMap<>();
+
+  ProviderStatistics(
+      double decay, double errorRateThreshold, long probeIntervalNanos, int sampleSize) {
+    this.decay = decay;
+    this.errorRateThreshold = errorRateThreshold;
+    this.probeIntervalNanos = probeIntervalNanos;
+    this.sampleSize = sampleSize;
+  }
+
+  void recordSuccess(Providers provider, long latencyNanos) {
+    record(provider, latencyNanos, 0);
+    samples.computeIfAbsent(provider, p -> new Samples(sampleSize)).add(latencyNanos);
+  }
+
+  void recordFailure(Providers provider, long latencyNanos) {
+    record(provider, latencyNanos, 1);
+  }
+
+  private void record(Providers provider, long latencyNanos, double error) {
+    long now = System.nanoTime();
+    stats.merge(
+        provider,
+        new Stats(latencyNanos, error, now),
+        (old, sample) ->
+            new Stats(
+                old.latencyNanos() + decay * (sample.latencyNanos() - old.latencyNanos()),
+                old.errorRate() + decay * (sample.errorRate() - old.errorRate()),
+                now));
+  }
+
+  /** Mean read latency in nanoseconds, or {@code 0} if the provider has not been read from. */
+  double getLatencyNanos(Providers provider) {
+    Stats s = stats.get(provider);
+    return s == null ? 0 : s.latencyNanos();
+  }
+
+  /**
+   * Returns the given percentile of the latest latencies of successful reads, or {@code -1} if too
+   * few reads have been recorded for a meaningful value.
+   *
+   * @param percentile between {@code 0} and {@code 1}
+   */
+  long getLatencyPercentileNanos(Providers provider, double percentile) {
+    Samples s = samples.get(provider);
+    return s == null ? -1 : s.percentile(percentile);
+  }
+
+  boolean isHealthy(Providers provider) {
+    Stats s = stats.get(provider);
+    return s == null
+        || s.errorRate() <= errorRateThreshold
+        || System.nanoTime() - s.updatedAt() >= probeIntervalNanos;
+  }
+
+  /**
+   * Orders healthy providers before unhealthy ones and faster providers before slower ones. The
+   * statistics are taken when the comparator is created, so that its order stays consistent while
+   * other reads are recorded and probe intervals pass.
+   */
+  Comparator<Providers> fastestFirst() {
+    Map<Providers, Rank> ranks = new EnumMap<>(Providers.class);
+    for (Providers provider : Providers.values()) {
+      ranks.put(provider, new Rank(!isHealthy(provider), getLatencyNanos(provider)));
+    }
+    return Comparator.comparing((Providers p) -> ranks.get(p).unhealthy())
+        .thenComparingDouble(p -> ranks.get(p).latencyNanos());
+  }
+
+  private record Stats(double latencyNanos, double errorRate, long updatedAt) {}
+
+  private record Rank(boolean unhealthy, double latencyNanos) {}
+
+  // ring buffer of the latest latencies
+  private static class Samples {
+    private static final int MIN_SAMPLES = 10;
+
+    private final long[] values;
+    private int count;
+    private int next;
+
+    Samples(int size) {
+      this.values = new long[size];
+    }
+
+    synchronized void add(long value) {
+      values[next] = value;
+      next = (next + 1) % values.length;
+      count = Math.min(count + 1, values.length);
+    }
+
+    synchronized long percentile(double percentile) {
+      if (count < MIN_SAMPLES) {
+        return -1;
+      }
+      long[] sorted = Arrays.copyOf(values, count);
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile * count) - 1;
+      return sorted[Math.clamp(index, 0, count - 1)];
+    }
+  }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import de.frachtwerk.essencium.storage.generic.provider.LimitedInputStream;
+import de.frachtwerk.essencium.storage.generic.provider.RangeReadableResource;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+/**
+ * Content of a file stored in several replicas. Every read goes to the replica that is currently
+ * the fastest healthy one and fails over to the others in turn. The time until each replica
+ * delivers its first byte is recorded in the {@link ProviderStatistics}.
+ *
+ * <p>With hedged reads, the next replica is read concurrently if the preferred one has not
+ * delivered its first byte within the configured latency percentile of its provider. The first
+ * replica to answer is used and the others are cancelled.
+ */
+class ReplicatedResource extends AbstractResource implements RangeReadableResource {
+  private static final Logger LOG = LoggerFactory.getLogger(ReplicatedResource.class);
+
+  record Replica(Providers provider, Resource content) {}
+
+  @FunctionalInterface
+  private interface Opener {
+    InputStream open(Resource content) throws IOException;
+  }
+
+  // outcome of reading a single replica, exactly one of stream and error is set
+  private record Attempt(Replica replica, InputStream stream, IOException error) {}
+
+  private final List<Replica> replicas;
+  private final ProviderStatistics statistics;
+  private final FileStorageConfiguration config;
+  private final ExecutorService executor;
+
+  /**
+   * @param replicas the replicas in their persisted order
+   * @param executor runs the concurrent reads of hedged reads
+   */
+  ReplicatedResource(
+      List<Replica> replicas,
+      ProviderStatistics statistics,
+      FileStorageConfiguration config,
+      ExecutorService executor) {
+    this.replicas = List.copyOf(replicas);
+    this.statistics = statistics;
+    this.config = config;
+    this.executor = executor;
+  }
+
+  @Override
+  public boolean exists() {
+    return replicas.stream().anyMatch(r -> r.content().exists());
+  }
+
+  @Override
+  public long contentLength() throws IOException {
+    return replicas.getFirst().content().contentLength();
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return open(Resource::getInputStream);
+  }
+
+  /** Whether the replica that would be read from next is a file of the file system. */
+  @Override
+  public boolean isFile() {
+    return getReadOrder().getFirst().content().isFile();
+  }
+
+  @Override
+  public File getFile() throws IOException {
+    return getReadOrder().getFirst().content().getFile();
+  }
+
+  @Override
+  public InputStream getInputStream(long position, long count) throws IOException {
+    return open(
+        content -> {
+          if (content instanceof RangeReadableResource rangeReadable) {
+            return rangeReadable.getInputStream(position, count);
+          }
+          InputStream in = content.getInputStream();
+          try {
+            in.skipNBytes(position);
+          } catch (IOException e) {
+            in.close();
+            throw e;
+          }
+          return new LimitedInputStream(in, count);
+        });
+  }
+
+  /** Returns the replicas in the order in which they are read from. */
+  List<Replica> getReadOrder() {
+    if (!config.isLatencyAwareReads()) {
+      return replicas;
+    }
+    return replicas.stream()
+        .sorted(Comparator.comparing(Replica::provider, statistics.fastestFirst()))
+        .toList();
+  }
+
+  private InputStream open(Opener opener) throws IOException {
+    List<Replica> order = getReadOrder();
+    return config.isHedgedReads() ? openHedged(order, opener) : openInTurn(order, opener);
+  }
+
+  private InputStream openInTurn(List<Replica> order, Opener opener) throws IOException {
+    IOException failure = null;
+    for (Replica replica : order) {
+      Attempt attempt = read(replica, opener, new AtomicBoolean());
+      if (attempt.stream() != null) {
+        return attempt.stream();
+      }
+      failure = addFailure(failure, attempt.error());
+    }
+    throw failure != null ? failure : noReplicas();
+  }
+
+  private InputStream openHedged(List<Replica> order, Opener opener) throws IOException {
+    BlockingQueue<Attempt> finished = new LinkedBlockingQueue<>();
+    AtomicBoolean settled = new AtomicBoolean();
+    List<Future<?>> running = new ArrayList<>();
+    IOException failure = null;
+    int started = 0;
+    int pending = 0;
+    try {
+      while (pending > 0 || started < order.size()) {
+        Attempt attempt = null;
+        if (pending > 0) {
+          attempt =
+              started < order.size()
+                  ? finished.poll(getHedgeDelayNanos(order.get(started - 1)), TimeUnit.NANOSECONDS)
+                  : finished.take();
+        }
+        if (attempt == null) {
+          // the first read, a failover, or a hedge for a replica that has not answered in time
+          Replica replica = order.get(started++);
+          if (pending > 0) {
+            LOG.debug("Hedging read of {}", replica.content().getDescription());
+          }
+          running.add(
+              executor.submit(
+                  () -> {
+                    finished.add(read(replica, opener, settled));
+                    if (settled.get()) {
+                      closeLosers(finished);
+                    }
+                  }));
+          pending++;
+        } else {
+          pending--;
+          if (attempt.stream() != null) {
+            return attempt.stream();
+          }
+          failure = addFailure(failure, attempt.error());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Read of " + getDescription() + " was interrupted");
+    } finally {
+      settled.set(true);
+      running.forEach(future -> future.cancel(true));
+      closeLosers(finished);
+    }
+    throw failure != null ? failure : noReplicas();
+  }
+
+  private long getHedgeDelayNanos(Replica replica) {
+    long percentile =
+        statistics.getLatencyPercentileNanos(
+            replica.provider(), config.getHedgeLatencyPercentile());
+    long delay = percentile < 0 ? config.getHedgeDefaultDelay().toNanos() : percentile;
+    return Math.max(delay, config.getHedgeMinDelay().toNanos());
+  }
+
+  /**
+   * Opens a replica and waits for its first byte, so that stalled replicas are noticed. Reads
+   * cancelled because another replica has answered are not recorded as failures.
+   */
+  private Attempt read(Replica replica, Opener opener, AtomicBoolean cancelled) {
+    long start = System.nanoTime();
+    try {
+      PushbackInputStream in = new PushbackInputStream(opener.open(replica.content()));
+      try {
+        int first = in.read();
+        if (first >= 0) {
+          in.unread(first);
+        }
+      } catch (IOException e) {
+        in.close();
+        throw e;
+      }
+      statistics.recordSuccess(replica.provider(), System.nanoTime() - start);
+      return new Attempt(replica, in, null);
+    } catch (IOException | RuntimeException e) {
+      if (cancelled.get()) {
+        return new Attempt(replica, null, new InterruptedIOException("Read was cancelled"));
+      }
+      statistics.recordFailure(replica.provider(), System.nanoTime() - start);
+      LOG.warn("Could not read {}", replica.content().getDescription(), e);
+      return new Attempt(replica, null, e instanceof IOException io ? io : new IOException(e));
+    }
+  }
+
+  // Closes the streams of replicas that answered after another one was chosen.
+  private static void closeLosers(BlockingQueue<Attempt> finished) {
+    Attempt attempt;
+    while ((attempt = finished.poll()) != null) {
+      if (attempt.stream() != null) {
+        try {
+          attempt.stream().close();
+        } catch (IOException e) {
+          LOG.debug("Could not close {}", attempt.replica().content().getDescription(), e);
+        }
+      }
+    }
+  }
+
+  private static IOException addFailure(IOException failure, IOException error) {
+    if (failure == null) {
+      return error;
+    }
+    failure.addSuppressed(error);
+    return failure;
+  }
+
+  private FileNotFoundException noReplicas() {
+    return new FileNotFoundException(getDescription() + " has no replicas");
+  }
+
+  @Override
+  public String getDescription() {
+    return "replicated resource "
+        + replicas.stream().map(r -> r.content().getDescription()).toList();
+  }
+}
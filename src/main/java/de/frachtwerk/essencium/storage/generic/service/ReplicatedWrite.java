@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a file to several providers concurrently and completes as soon as the required number of
+ * providers has stored it. If the requirement can no longer be met, the replicas written so far,
+ * and those still finishing afterwards, are rolled back. Replicas finishing after a successful
+ * completion are handed to a listener.
+ */
+class ReplicatedWrite<S> {
+  private static final Logger LOG = LoggerFactory.getLogger(ReplicatedWrite.class);
+
+  @FunctionalInterface
+  interface ProviderWrite<S> {
+    S write(Providers provider) throws IOException;
+  }
+
+  private final List<Providers> providers;
+  private final int required;
+  private final Consumer<S> rollback;
+  private final Consumer<S> lateReplicas;
+  private final CompletableFuture<List<S>> result = new CompletableFuture<>();
+  private final Object[] replicas;
+  private final List<Throwable> errors = new ArrayList<>();
+  private int succeeded;
+  private boolean decided;
+
+  ReplicatedWrite(
+      List<Providers> providers, int required, Consumer<S> rollback, Consumer<S> lateReplicas) {
+    this.providers = providers;
+    this.required = required;
+    this.rollback = rollback;
+    this.lateReplicas = lateReplicas;
+    this.replicas = new Object[providers.size()];
+  }
+
+  /**
+   * Starts the writes and waits until the required number of them has succeeded.
+   *
+   * @param completion called once every write has finished, successfully or not
+   * @return the written replicas in the order of the providers
+   */
+  List<S> run(ProviderWrite<S> write, Executor executor, Runnable completion) throws IOException {
+    List<CompletableFuture<S>> writes = new ArrayList<>(providers.size());
+    for (int i = 0; i < providers.size(); i++) {
+      int index = i;
+      Providers provider = providers.get(i);
+      CompletableFuture<S> future =
+          CompletableFuture.supplyAsync(
+              () -> {
+                try {
+                  return write.write(provider);
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+              },
+              executor);
+      future.whenComplete(
+          (info, e) -> {
+            if (e == null) {
+              onSuccess(index, info);
+            } else {
+              onFailure(provider, e);
+            }
+          });
+      writes.add(future);
+    }
+    CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new))
+        .whenComplete((r, e) -> completion.run());
+
+    try {
+      return result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      onFailure(null, e);
+      if (!result.isCompletedExceptionally()) {
+        // the file was stored just before the interrupt
+        return result.join();
+      }
+      throw new InterruptedIOException("Interrupted while storing the file");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException unchecked) {
+        throw unchecked.getCause();
+      }
+      if (cause instanceof IOException io) {
+        throw io;
+      }
+      if (cause instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IOException("Could not store the file", cause);
+    }
+  }
+
+  private void onSuccess(int index, S info) {
+    boolean late;
+    boolean rolledBack;
+    synchronized (this) {
+      late = decided && !result.isCompletedExceptionally();
+      rolledBack = decided && result.isCompletedExceptionally();
+      if (!decided) {
+        replicas[index] = info;
+        if (++succeeded == required) {
+          decided = true;
+          result.complete(collect());
+        }
+      }
+    }
+    if (late) {
+      lateReplicas.accept(info);
+    } else if (rolledBack) {
+      rollBack(List.of(info));
+    }
+  }
+
+  private void onFailure(Providers provider, Throwable e) {
+    Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+    if (provider != null) {
+      LOG.error("Could not store file with provider {}", provider, cause);
+    }
+    List<S> written;
+    synchronized (this) {
+      errors.add(cause);
+      if (decided
+          || (errors.size() <= providers.size() - required
+              && !(cause instanceof InterruptedException))) {
+        return;
+      }
+      decided = true;
+      written = collect();
+      Arrays.fill(replicas, null);
+      // completed under the lock, so replicas finishing from now on are rolled back as well
+      Throwable first = errors.getFirst();
+      errors.stream().skip(1).forEach(first::addSuppressed);
+      result.completeExceptionally(first);
+    }
+    rollBack(written);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<S> collect() {
+    return Arrays.stream(replicas).filter(Objects::nonNull).map(r -> (S) r).toList();
+  }
+
+  private void rollBack(List<S> written) {
+    for (S info : written) {
+      try {
+        rollback.accept(info);
+      } catch (RuntimeException e) {
+        LOG.error("Could not roll back replica {}", info, e);
+      }
+    }
+  }
+}
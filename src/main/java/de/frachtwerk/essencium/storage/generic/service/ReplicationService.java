@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
+import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
+import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
+import de.frachtwerk.essencium.storage.generic.repository.AbstractFileRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Writes the pending replicas of the write-behind mode in the background. The pending storage infos
+ * form a persistent queue: they are polled from the database, so replication resumes after a
+ * restart. Each run claims a batch of due replicas in a short transaction by moving their next
+ * attempt behind a lease of {@code replicationMaxRetryDelay}, so that other application instances
+ * skip them. The replicas are written outside of any transaction, and the result of each one is
+ * stored in its own transaction. A failed replica is retried with exponential backoff, which is
+ * stored with the replica as well.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReplicationService<
+        F extends AbstractFile<F, ID, S>,
+        ID extends Serializable,
+        S extends AbstractStorageInfo<F, ID, S>>
+    implements DisposableBean {
+  private static final Logger LOG = LoggerFactory.getLogger(ReplicationService.class);
+
+  private final AbstractFileRepository<F, ID, S> repository;
+  private final StorageServiceDispatcher<F, ID, S> dispatcher;
+  private final FileStorageConfiguration config;
+  private final TransactionTemplate transactionTemplate;
+
+  private ScheduledExecutorService scheduler;
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void init() {
+    if (config.isWriteBehind() && scheduler == null) {
+      long interval = config.getReplicationInterval().toMillis();
+      scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              Thread.ofPlatform().name("storage-replication").daemon(true).factory());
+      scheduler.scheduleWithFixedDelay(
+          this::replicatePending, interval, interval, TimeUnit.MILLISECONDS);
+      LOG.info("Started write-behind replication every {} ms", interval);
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Writes the due pending replicas of up to {@code replicationBatchSize} files that are not being
+   * replicated by another instance.
+   */
+  public void replicatePending() {
+    List<Claim<F, S>> claims;
+    try {
+      claims = transactionTemplate.execute(status -> claim());
+    } catch (RuntimeException e) {
+      LOG.error("Could not claim pending replicas", e);
+      return;
+    }
+    for (Claim<F, S> claim : claims) {
+      try {
+        replicate(claim);
+      } catch (RuntimeException e) {
+        LOG.error("Could not replicate file {}", claim.file().getId(), e);
+      }
+    }
+  }
+
+  // Claims the due replicas of a batch of files, the returned entities are detached.
+  private List<Claim<F, S>> claim() {
+    Instant now = Instant.now();
+    Instant lease = now.plus(config.getReplicationMaxRetryDelay());
+    List<Claim<F, S>> claims = new ArrayList<>();
+    for (F file : repository.findWithDueReplicas(now, Limit.of(config.getReplicationBatchSize()))) {
+      Optional<S> source =
+          file.getStorageInfos().stream()
+              .filter(i -> i.isAvailable() && !i.isPending())
+              .findFirst();
+      for (S info : file.getStorageInfos()) {
+        if (!isDue(info, now)) {
+          continue;
+        }
+        if (source.isPresent()) {
+          info.setNextReplicationAttempt(lease);
+          claims.add(new Claim<>(file, info, source.get()));
+        } else {
+          Instant next = recordFailure(info);
+          LOG.warn(
+              "File {} has pending replicas but no available source, retrying at {}",
+              file.getId(),
+              next);
+        }
+      }
+    }
+    return claims;
+  }
+
+  private static boolean isDue(AbstractStorageInfo<?, ?, ?> info, Instant now) {
+    return info.isPending()
+        && (info.getNextReplicationAttempt() == null
+            || !now.isBefore(info.getNextReplicationAttempt()));
+  }
+
+  private void replicate(Claim<F, S> claim) {
+    F file = claim.file();
+    S info = claim.info();
+    try {
+      Resource content = dispatcher.loadFile(claim.source()).getContent();
+      if (content == null) {
+        throw new IOException("Source of file " + file.getId() + " is not available");
+      }
+      try (InputStream in = content.getInputStream()) {
+        dispatcher.writeReplica(info, file.getMimeType(), in, file.getSize());
+      }
+    } catch (IOException | RuntimeException e) {
+      Optional<Instant> next =
+          transactionTemplate.execute(
+              status ->
+                  reload(claim).filter(AbstractStorageInfo::isPending).map(this::recordFailure));
+      LOG.warn(
+          "Could not replicate file {}, retrying at {}",
+          file.getId(),
+          next.map(Instant::toString).orElse("never"),
+          e);
+      return;
+    }
+    Optional<S> stored =
+        transactionTemplate.execute(status -> reload(claim).map(this::recordSuccess));
+    if (stored.isEmpty()) {
+      // the file has been deleted while its replica was written
+      dispatcher.deleteFile(info);
+      LOG.debug("Deleted replica {} of deleted file {}", info, file.getId());
+    } else {
+      LOG.debug("Replicated file {} to {}", file.getId(), info);
+    }
+  }
+
+  // Returns the current state of the claimed storage info, if it still exists.
+  private Optional<S> reload(Claim<F, S> claim) {
+    ID id = claim.info().getId();
+    return repository
+        .findForUpdateById(claim.file().getId())
+        .flatMap(f -> f.getStorageInfos().stream().filter(i -> id.equals(i.getId())).findFirst());
+  }
+
+  private S recordSuccess(S info) {
+    info.setPending(false);
+    info.setAvailable(true);
+    info.setReplicationAttempts(0);
+    info.setNextReplicationAttempt(null);
+    return info;
+  }
+
+  private Instant recordFailure(S info) {
+    int attempts = info.getReplicationAttempts() + 1;
+    Instant next = Instant.now().plus(delay(attempts));
+    info.setReplicationAttempts(attempts);
+    info.setNextReplicationAttempt(next);
+    return next;
+  }
+
+  private Duration delay(int attempts) {
+    Duration delay =
+        config.getReplicationRetryDelay().multipliedBy(1L << Math.min(attempts - 1, 20));
+    return delay.compareTo(config.getReplicationMaxRetryDelay()) > 0
+        ? config.getReplicationMaxRetryDelay()
+        : delay;
+  }
+
+  private record Claim<F, S>(F file, S info, S source) {}
+}
@@ -22,14 +22,66 @@ package de.frachtwerk.essencium.storage.generic.service;
 import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
 import de.frachtwerk.essencium.storage.generic.model.Providers;
+import jakarta.annotation.Nullable;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
 
 public interface StorageService<
     F extends AbstractFile<F, ID, S>,
     ID extends Serializable,
     S extends AbstractStorageInfo<F, ID, S>> {
-  S saveFile(String originalName, byte[] content) throws IOException;
+  default S saveFile(String originalName, @Nullable String mimeType, byte[] content)
+      throws IOException {
+    return saveFile(originalName, mimeType, new ByteArrayInputStream(content), content.length);
+  }
+
+  /**
+   * Stores the content read from the given stream without holding it in memory as a whole. The
+   * stream is read to its end but not closed.
+   *
+   * @param originalName Name of the file
+   * @param mimeType MIME type of the content, or {@code null} if unknown
+   * @param content Content of the file
+   * @param length Number of bytes of the content, or a negative value if unknown
+   * @return Storage info of the stored file
+   * @throws IOException If the file could not be stored
+   */
+  S saveFile(String originalName, @Nullable String mimeType, InputStream content, long length)
+      throws IOException;
+
+  /**
+   * Reserves the location of a replica whose content is written later by {@link #writeReplica}. The
+   * returned info is pending and not available.
+   *
+   * @param originalName Name of the file
+   * @return Storage info of the pending replica
+   * @throws IOException If the location could not be reserved
+   */
+  S prepareReplica(String originalName) throws IOException;
+
+  /**
+   * Writes the content of a replica prepared by {@link #prepareReplica}. The info is available and
+   * no longer pending afterwards.
+   *
+   * @param info Storage info of the pending replica
+   * @param mimeType MIME type of the content, or {@code null} if unknown
+   * @param content Content of the file, read to its end but not closed
+   * @param length Number of bytes of the content, or a negative value if unknown
+   * @throws IOException If the replica could not be written
+   */
+  void writeReplica(S info, @Nullable String mimeType, InputStream content, long length)
+      throws IOException;
+
+  /**
+   * Creates a storage info that refers to the content already stored for the given one. No bytes
+   * are written, the content is shared by both infos.
+   *
+   * @param info Available storage info of the stored content
+   * @return New storage info referring to the same content
+   */
+  S referenceFile(S info);
 
   boolean deleteFile(S info);
 
@@ -24,17 +24,30 @@ import de.frachtwerk.essencium.storage.generic.model.AbstractFile;
 import de.frachtwerk.essencium.storage.generic.model.AbstractStorageInfo;
 import de.frachtwerk.essencium.storage.generic.model.Providers;
 import de.frachtwerk.essencium.storage.generic.model.StorageInfoVisitor;
+import de.frachtwerk.essencium.storage.generic.model.WritePolicy;
 import de.frachtwerk.essencium.storage.generic.provider.local.AbstractLocalStorageInfo;
 import de.frachtwerk.essencium.storage.generic.provider.local.AbstractLocalStorageService;
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageInfo;
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageService;
 import jakarta.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -43,22 +56,288 @@ public class StorageServiceDispatcher<
     F extends AbstractFile<F, ID, S>,
     ID extends Serializable,
     S extends AbstractStorageInfo<F, ID, S>> {
+  private static final Logger LOG = LoggerFactory.getLogger(StorageServiceDispatcher.class);
+  // first byte latencies kept per provider to compute the hedging deadline
+  private static final int HEDGE_LATENCY_SAMPLES = 256;
+  private static final String SPOOL_PREFIX = "essencium-upload-";
+
   @Nullable private final AbstractLocalStorageService<F, ID, S> local;
   @Nullable private final AbstractS3StorageService<F, ID, S> s3;
   private final FileStorageConfiguration config;
 
-  public List<S> saveFile(String originalName, byte[] content) throws IOException {
-    List<S> infos = new ArrayList<>();
-    for (Providers provider : config.getUsedProviders()) {
-      switch (provider) {
-        case LOCAL -> infos.add(Objects.requireNonNull(local).saveFile(originalName, content));
-        case S3 -> infos.add(Objects.requireNonNull(s3).saveFile(originalName, content));
-        default -> throw new IllegalArgumentException("Unknown provider");
+  private ProviderStatistics readStatistics;
+
+  private final Executor writeExecutor =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("storage-write-", 0).factory());
+  private final ExecutorService readExecutor =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("storage-read-", 0).factory());
+
+  public List<S> saveFile(String originalName, @Nullable String mimeType, byte[] content)
+      throws IOException {
+    return saveFile(originalName, mimeType, content, this::discardLateReplica);
+  }
+
+  /**
+   * Stores the content with all used providers concurrently and returns once the configured {@link
+   * WritePolicy} is met.
+   *
+   * @param lateReplicas receives the replicas that are stored after this method has returned
+   */
+  public List<S> saveFile(
+      String originalName, @Nullable String mimeType, byte[] content, Consumer<S> lateReplicas)
+      throws IOException {
+    if (config.isWriteBehind()) {
+      return writeBehind(
+          provider -> getStorageService(provider).saveFile(originalName, mimeType, content),
+          originalName);
+    }
+    return write(
+        provider -> getStorageService(provider).saveFile(originalName, mimeType, content),
+        lateReplicas,
+        () -> {});
+  }
+
+  public List<S> saveFile(
+      String originalName, @Nullable String mimeType, InputStream content, long length)
+      throws IOException {
+    return saveFile(originalName, mimeType, content, length, this::discardLateReplica);
+  }
+
+  /**
+   * Stores the streamed content with all used providers concurrently and returns once the
+   * configured {@link WritePolicy} is met. If more than one provider is used, the content is
+   * spooled to a file once and read from there by every provider, see {@link #spool}.
+   *
+   * @param lateReplicas receives the replicas that are stored after this method has returned
+   */
+  public List<S> saveFile(
+      String originalName,
+      @Nullable String mimeType,
+      InputStream content,
+      long length,
+      Consumer<S> lateReplicas)
+      throws IOException {
+    if (config.getUsedProviders().size() == 1) {
+      Providers provider = config.getUsedProviders().iterator().next();
+      return List.of(getStorageService(provider).saveFile(originalName, mimeType, content, length));
+    }
+    if (config.isWriteBehind()) {
+      return writeBehind(
+          provider -> getStorageService(provider).saveFile(originalName, mimeType, content, length),
+          originalName);
+    }
+    Path spool = spool(content, length);
+    return saveFile(originalName, mimeType, spool, Files.size(spool), lateReplicas);
+  }
+
+  /**
+   * Whether streamed uploads are spooled to a file before they are written, which is the case if
+   * they are written to more than one provider during the upload.
+   */
+  public boolean spoolsUploads() {
+    return config.getUsedProviders().size() > 1 && !config.isWriteBehind();
+  }
+
+  /**
+   * Copies the content to a new spool file in the configured {@code spoolDirectory}. The file has
+   * to be passed to {@link #saveFile(String, String, Path, long, Consumer)} or deleted by the
+   * caller.
+   */
+  public Path spool(InputStream content, long length) throws IOException {
+    Path spool =
+        StringUtils.isBlank(config.getSpoolDirectory())
+            ? Files.createTempFile(SPOOL_PREFIX, null)
+            : Files.createTempFile(Path.of(config.getSpoolDirectory()), SPOOL_PREFIX, null);
+    try {
+      long spooled = Files.copy(content, spool, StandardCopyOption.REPLACE_EXISTING);
+      if (length >= 0 && spooled != length) {
+        throw new IOException("Expected " + length + " bytes but received " + spooled);
       }
+    } catch (IOException | RuntimeException e) {
+      deleteSpool(spool);
+      throw e;
+    }
+    return spool;
+  }
+
+  /**
+   * Stores the content of a spool file with all used providers concurrently and returns once the
+   * configured {@link WritePolicy} is met. The spool file is deleted once the last provider has
+   * read it.
+   *
+   * @param lateReplicas receives the replicas that are stored after this method has returned
+   */
+  public List<S> saveFile(
+      String originalName,
+      @Nullable String mimeType,
+      Path spool,
+      long length,
+      Consumer<S> lateReplicas)
+      throws IOException {
+    try {
+      ReplicatedWrite.ProviderWrite<S> write =
+          provider -> {
+            try (InputStream in = Files.newInputStream(spool)) {
+              return getStorageService(provider).saveFile(originalName, mimeType, in, length);
+            }
+          };
+      if (config.isWriteBehind()) {
+        List<S> infos = writeBehind(write, originalName);
+        deleteSpool(spool);
+        return infos;
+      }
+      // the spool file is needed until the last provider has finished
+      return write(write, lateReplicas, () -> deleteSpool(spool));
+    } catch (IOException | RuntimeException e) {
+      deleteSpool(spool);
+      throw e;
+    }
+  }
+
+  private List<S> write(
+      ReplicatedWrite.ProviderWrite<S> write, Consumer<S> lateReplicas, Runnable completion)
+      throws IOException {
+    List<Providers> providers = List.copyOf(config.getUsedProviders());
+    if (providers.size() == 1) {
+      try {
+        return List.of(write.write(providers.getFirst()));
+      } finally {
+        completion.run();
+      }
+    }
+    int required =
+        switch (config.getWritePolicy()) {
+          case ALL -> providers.size();
+          case QUORUM -> providers.size() / 2 + 1;
+          case FIRST -> 1;
+        };
+    return new ReplicatedWrite<S>(providers, required, this::deleteFile, lateReplicas)
+        .run(write, writeExecutor, completion);
+  }
+
+  /**
+   * Writes the file to the first used provider and prepares pending replicas for the others, which
+   * are written later by the {@link ReplicationService}.
+   */
+  private List<S> writeBehind(ReplicatedWrite.ProviderWrite<S> write, String originalName)
+      throws IOException {
+    List<Providers> providers = List.copyOf(config.getUsedProviders());
+    List<S> infos = new ArrayList<>(providers.size());
+    infos.add(write.write(providers.getFirst()));
+    try {
+      for (Providers provider : providers.subList(1, providers.size())) {
+        infos.add(getStorageService(provider).prepareReplica(originalName));
+      }
+    } catch (IOException | RuntimeException e) {
+      infos.forEach(this::deleteFile);
+      throw e;
     }
     return infos;
   }
 
+  /** Writes the content of a pending replica with its provider. */
+  public void writeReplica(S info, @Nullable String mimeType, InputStream content, long length)
+      throws IOException {
+    StorageService<F, ID, S> service =
+        info.accept(
+            new StorageInfoVisitor<StorageService<F, ID, S>, F, ID, S>() {
+              @Override
+              public StorageService<F, ID, S> visit(AbstractLocalStorageInfo<F, ID, S> info) {
+                return Objects.requireNonNull(local);
+              }
+
+              @Override
+              public StorageService<F, ID, S> visit(AbstractS3StorageInfo<F, ID, S> info) {
+                return Objects.requireNonNull(s3);
+              }
+            });
+    service.writeReplica(info, mimeType, content, length);
+  }
+
+  /**
+   * Returns the content of a file stored in the given loaded replicas. Reads go to the currently
+   * fastest healthy provider and fail over to the other replicas. With {@code hedgedReads}, the
+   * next replica is read concurrently if the preferred one is slow to respond.
+   */
+  public Resource getContent(List<S> replicas) {
+    if (replicas.size() == 1) {
+      return replicas.getFirst().getContent();
+    }
+    return new ReplicatedResource(
+        replicas.stream()
+            .map(info -> new ReplicatedResource.Replica(getProvider(info), info.getContent()))
+            .toList(),
+        getReadStatistics(),
+        config,
+        readExecutor);
+  }
+
+  private synchronized ProviderStatistics getReadStatistics() {
+    if (readStatistics == null) {
+      readStatistics =
+          new ProviderStatistics(
+              config.getReadStatisticsDecay(),
+              config.getReadErrorRateThreshold(),
+              config.getReadProbeInterval().toNanos(),
+              HEDGE_LATENCY_SAMPLES);
+    }
+    return readStatistics;
+  }
+
+  private Providers getProvider(S info) {
+    return info.accept(
+        new StorageInfoVisitor<Providers, F, ID, S>() {
+          @Override
+          public Providers visit(AbstractLocalStorageInfo<F, ID, S> info) {
+            return Providers.LOCAL;
+          }
+
+          @Override
+          public Providers visit(AbstractS3StorageInfo<F, ID, S> info) {
+            return Providers.S3;
+          }
+        });
+  }
+
+  private void discardLateReplica(S info) {
+    LOG.warn("Replica {} was stored after the upload completed and is removed again", info);
+    deleteFile(info);
+  }
+
+  private static void deleteSpool(Path spool) {
+    try {
+      Files.deleteIfExists(spool);
+    } catch (IOException e) {
+      LOG.warn("Could not delete spool file {}", spool, e);
+    }
+  }
+
+  private StorageService<F, ID, S> getStorageService(Providers provider) {
+    return switch (provider) {
+      case LOCAL -> Objects.requireNonNull(local);
+      case S3 -> Objects.requireNonNull(s3);
+    };
+  }
+
+  /**
+   * Creates a storage info that shares the content of the given one, see {@link
+   * StorageService#referenceFile}.
+   */
+  public S referenceFile(S info) {
+    return info.accept(
+        new StorageInfoVisitor<S, F, ID, S>() {
+          @Override
+          public S visit(AbstractLocalStorageInfo<F, ID, S> info) {
+            return Objects.requireNonNull(local).referenceFile((S) info);
+          }
+
+          @Override
+          public S visit(AbstractS3StorageInfo<F, ID, S> info) {
+            return Objects.requireNonNull(s3).referenceFile((S) info);
+          }
+        });
+  }
+
   public boolean deleteFile(S info) {
     return info.accept(
         new StorageInfoVisitor<Boolean, F, ID, S>() {
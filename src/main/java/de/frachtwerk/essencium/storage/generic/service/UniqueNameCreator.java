@@ -20,26 +20,102 @@
 package de.frachtwerk.essencium.storage.generic.service;
 
 import jakarta.validation.constraints.NotNull;
-import java.util.Arrays;
-import java.util.List;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 import org.springframework.stereotype.Component;
 
+/**
+ * Makes names unique by appending a numeric suffix, e.g. {@code scan_3.pdf}. Taken suffixes are
+ * found with an exponential and then a binary search, so only a logarithmic number of names is
+ * tested. Names that are reserved repeatedly are served from an in-memory index of the next suffix
+ * to try, which is rebuilt by a search whenever a name is missing from it.
+ */
 @Component
 public class UniqueNameCreator {
+  // the index is cleared once it holds this many names, it is rebuilt on demand
+  private static final int MAX_INDEXED_NAMES = 10_000;
+
+  private final Map<String, AtomicLong> nextSuffixes = new ConcurrentHashMap<>();
+
+  /** Atomically reserves a name, e.g. by creating a file with it. */
+  @FunctionalInterface
+  public interface Reservation {
+    /**
+     * @return {@code false} if the name is already taken
+     */
+    boolean tryReserve(String name) throws IOException;
+  }
+
+  /**
+   * Returns the original name if it does not exist, otherwise the name with the lowest free suffix.
+   * Suffixes are assumed to be taken without gaps, names in a gap may be returned as well.
+   */
   @NotNull
   public String getUniqueName(String originalName, Predicate<String> exists) {
-    String name;
-    int i = 1;
-    name = originalName;
-    final List<String> parts = Arrays.asList(originalName.split("\\."));
-    String suffix = parts.getLast();
-    String prefix = parts.stream().limit(parts.size() - 1).collect(Collectors.joining("."));
-
-    while (exists.test(name)) {
-      name = prefix + "_" + i++ + "." + suffix;
+    if (!exists.test(originalName)) {
+      return originalName;
+    }
+    return withSuffix(originalName, findFreeSuffix(originalName, exists));
+  }
+
+  /**
+   * Reserves the original name or, if it is taken, the name with the next suffix. Concurrent calls
+   * never reserve the same name, as every candidate is passed to the atomic reservation and the
+   * next one is tried if it fails.
+   *
+   * @param exists used to find the next free suffix if the name is not indexed yet
+   * @return the reserved name
+   */
+  @NotNull
+  public String reserveUniqueName(
+      String originalName, Predicate<String> exists, Reservation reservation) throws IOException {
+    AtomicLong next = nextSuffixes.get(originalName);
+    if (next == null) {
+      if (reservation.tryReserve(originalName)) {
+        return originalName;
+      }
+      if (nextSuffixes.size() >= MAX_INDEXED_NAMES) {
+        nextSuffixes.clear();
+      }
+      next =
+          nextSuffixes.computeIfAbsent(
+              originalName, name -> new AtomicLong(findFreeSuffix(name, exists)));
+    }
+    while (true) {
+      String name = withSuffix(originalName, next.getAndIncrement());
+      if (reservation.tryReserve(name)) {
+        return name;
+      }
+    }
+  }
+
+  // Returns the lowest suffix not taken, assuming the original name is taken.
+  private static long findFreeSuffix(String originalName, Predicate<String> exists) {
+    long taken = 0;
+    long free = 1;
+    while (exists.test(withSuffix(originalName, free))) {
+      taken = free;
+      free *= 2;
+    }
+    while (free - taken > 1) {
+      long middle = (taken + free) >>> 1;
+      if (exists.test(withSuffix(originalName, middle))) {
+        taken = middle;
+      } else {
+        free = middle;
+      }
+    }
+    return free;
+  }
+
+  private static String withSuffix(String name, long suffix) {
+    int extension = name.lastIndexOf('.');
+    if (extension <= 0) {
+      return name + "_" + suffix;
     }
-    return name;
+    return name.substring(0, extension) + "_" + suffix + name.substring(extension);
   }
 }
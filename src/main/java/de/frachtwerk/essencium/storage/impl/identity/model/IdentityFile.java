@@ -32,12 +32,14 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.core.io.Resource;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
 @Entity(name = "FILE")
+@Table(indexes = @Index(name = "file_content_hash_idx", columnList = "content_hash"))
 @AllArgsConstructor
 public class IdentityFile extends AbstractFile<IdentityFile, Long, IdentityStorageInfo> {
 
@@ -48,10 +50,11 @@ public class IdentityFile extends AbstractFile<IdentityFile, Long, IdentityStora
   @NotNull
   @OrderColumn
   @OneToMany(cascade = CascadeType.ALL)
+  @BatchSize(size = 100)
   List<IdentityStorageInfo> storageInfos;
 
   public IdentityFile(
-      @NotNull List<IdentityStorageInfo> infos, String name, int length, String mimeType) {
+      @NotNull List<IdentityStorageInfo> infos, String name, long length, String mimeType) {
     super(name, length, mimeType);
     this.storageInfos = infos;
   }
@@ -19,6 +19,7 @@
 
 package de.frachtwerk.essencium.storage.impl.identity.provider.local;
 
+import de.frachtwerk.essencium.storage.generic.model.StorageInfoVisitor;
 import de.frachtwerk.essencium.storage.generic.provider.local.AbstractLocalStorageInfo;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityFile;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
@@ -33,6 +34,7 @@ import lombok.experimental.SuperBuilder;
 @EqualsAndHashCode(callSuper = true)
 @AllArgsConstructor
 @Entity(name = "LOCAL_STORAGE_INFO")
+@Table(indexes = @Index(name = "local_storage_info_path_idx", columnList = "path"))
 @NoArgsConstructor
 @Data
 @SuperBuilder(toBuilder = true)
@@ -45,4 +47,9 @@ public class LocalIdentityStorageInfo extends IdentityStorageInfo
     super(file);
     this.path = path;
   }
+
+  @Override
+  public <T> T accept(StorageInfoVisitor<T, IdentityFile, Long, IdentityStorageInfo> visitor) {
+    return visitor.visit(this);
+  }
 }
@@ -19,6 +19,7 @@
 
 package de.frachtwerk.essencium.storage.impl.identity.provider.s3;
 
+import de.frachtwerk.essencium.storage.generic.model.StorageInfoVisitor;
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageInfo;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityFile;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
@@ -33,6 +34,7 @@ import lombok.experimental.SuperBuilder;
 @EqualsAndHashCode(callSuper = true)
 @AllArgsConstructor
 @Entity(name = "S3_STORAGE_INFO")
+@Table(indexes = @Index(name = "s3_storage_info_s3object_key_idx", columnList = "s3object_key"))
 @NoArgsConstructor
 @Data
 @SuperBuilder(toBuilder = true)
@@ -45,4 +47,9 @@ public class S3IdentityStorageInfo extends IdentityStorageInfo
     super(file);
     this.s3ObjectKey = s3ObjectKey;
   }
+
+  @Override
+  public <T> T accept(StorageInfoVisitor<T, IdentityFile, Long, IdentityStorageInfo> visitor) {
+    return visitor.visit(this);
+  }
 }
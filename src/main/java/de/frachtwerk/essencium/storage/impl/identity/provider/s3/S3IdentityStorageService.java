@@ -21,8 +21,9 @@ package de.frachtwerk.essencium.storage.impl.identity.provider.s3;
 
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageInfo;
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageService;
+import de.frachtwerk.essencium.storage.generic.provider.s3.S3BucketAccessValidator;
+import de.frachtwerk.essencium.storage.generic.provider.s3.S3ClientProvider;
 import de.frachtwerk.essencium.storage.generic.provider.s3.S3StorageConfiguration;
-import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityFile;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
 import jakarta.validation.constraints.NotNull;
@@ -33,8 +34,10 @@ public class S3IdentityStorageService
     extends AbstractS3StorageService<IdentityFile, Long, IdentityStorageInfo> {
 
   public S3IdentityStorageService(
-      @NotNull S3StorageConfiguration config, MimeTypeHelper mimeTypeHelper) {
-    super(config, mimeTypeHelper);
+      @NotNull S3StorageConfiguration config,
+      @NotNull S3ClientProvider clientProvider,
+      @NotNull S3BucketAccessValidator bucketValidator) {
+    super(config, clientProvider, bucketValidator);
   }
 
   @Override
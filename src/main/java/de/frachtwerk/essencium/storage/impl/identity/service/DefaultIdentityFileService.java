@@ -19,6 +19,7 @@
 
 package de.frachtwerk.essencium.storage.impl.identity.service;
 
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
 import de.frachtwerk.essencium.storage.generic.service.AbstractFileService;
 import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
 import de.frachtwerk.essencium.storage.generic.service.StorageServiceDispatcher;
@@ -27,6 +28,7 @@ import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
 import de.frachtwerk.essencium.storage.impl.identity.repository.IdentityFileRepository;
 import java.util.List;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class DefaultIdentityFileService
@@ -34,13 +36,15 @@ public class DefaultIdentityFileService
   public DefaultIdentityFileService(
       StorageServiceDispatcher<IdentityFile, Long, IdentityStorageInfo> dispatcher,
       IdentityFileRepository repository,
-      MimeTypeHelper mimeTypeHelper) {
-    super(dispatcher, repository, mimeTypeHelper);
+      MimeTypeHelper mimeTypeHelper,
+      FileStorageConfiguration config,
+      TransactionTemplate transactionTemplate) {
+    super(dispatcher, repository, mimeTypeHelper, config, transactionTemplate);
   }
 
   @Override
   protected IdentityFile getNewFile(
-      List<IdentityStorageInfo> infos, String name, int length, String mimeType) {
+      List<IdentityStorageInfo> infos, String name, long length, String mimeType) {
     return new IdentityFile(infos, name, length, mimeType);
   }
 }
@@ -33,12 +33,14 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.core.io.Resource;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
 @Entity(name = "FILE")
+@Table(indexes = @Index(name = "file_content_hash_idx", columnList = "content_hash"))
 @AllArgsConstructor
 @Builder(toBuilder = true)
 public class SequenceFile extends AbstractFile<SequenceFile, Long, SequenceStorageInfo> {
@@ -53,10 +55,11 @@ public class SequenceFile extends AbstractFile<SequenceFile, Long, SequenceStora
   @NotNull
   @OrderColumn
   @OneToMany(cascade = CascadeType.ALL)
+  @BatchSize(size = 100)
   List<SequenceStorageInfo> storageInfos;
 
   public SequenceFile(
-      @NotNull List<SequenceStorageInfo> infos, String name, int length, String mimeType) {
+      @NotNull List<SequenceStorageInfo> infos, String name, long length, String mimeType) {
     super(name, length, mimeType);
     this.storageInfos = infos;
   }
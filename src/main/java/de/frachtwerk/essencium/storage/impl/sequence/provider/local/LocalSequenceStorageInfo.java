@@ -34,6 +34,7 @@ import lombok.experimental.SuperBuilder;
 @EqualsAndHashCode(callSuper = true)
 @AllArgsConstructor
 @Entity(name = "LOCAL_STORAGE_INFO")
+@Table(indexes = @Index(name = "local_storage_info_path_idx", columnList = "path"))
 @NoArgsConstructor
 @Data
 @SuperBuilder(toBuilder = true)
@@ -34,6 +34,7 @@ import lombok.experimental.SuperBuilder;
 @EqualsAndHashCode(callSuper = true)
 @AllArgsConstructor
 @Entity(name = "S3_STORAGE_INFO")
+@Table(indexes = @Index(name = "s3_storage_info_s3object_key_idx", columnList = "s3object_key"))
 @NoArgsConstructor
 @Data
 @SuperBuilder(toBuilder = true)
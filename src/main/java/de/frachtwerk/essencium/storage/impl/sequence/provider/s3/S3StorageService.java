@@ -21,8 +21,9 @@ package de.frachtwerk.essencium.storage.impl.sequence.provider.s3;
 
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageInfo;
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageService;
+import de.frachtwerk.essencium.storage.generic.provider.s3.S3BucketAccessValidator;
+import de.frachtwerk.essencium.storage.generic.provider.s3.S3ClientProvider;
 import de.frachtwerk.essencium.storage.generic.provider.s3.S3StorageConfiguration;
-import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
 import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceFile;
 import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceStorageInfo;
 import jakarta.validation.constraints.NotNull;
@@ -32,8 +33,11 @@ import org.springframework.stereotype.Service;
 public class S3StorageService
     extends AbstractS3StorageService<SequenceFile, Long, SequenceStorageInfo> {
 
-  public S3StorageService(@NotNull S3StorageConfiguration config, MimeTypeHelper mimeTypeHelper) {
-    super(config, mimeTypeHelper);
+  public S3StorageService(
+      @NotNull S3StorageConfiguration config,
+      @NotNull S3ClientProvider clientProvider,
+      @NotNull S3BucketAccessValidator bucketValidator) {
+    super(config, clientProvider, bucketValidator);
   }
 
   @Override
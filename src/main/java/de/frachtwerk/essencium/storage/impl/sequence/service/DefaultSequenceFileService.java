@@ -19,6 +19,7 @@
 
 package de.frachtwerk.essencium.storage.impl.sequence.service;
 
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
 import de.frachtwerk.essencium.storage.generic.service.AbstractFileService;
 import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
 import de.frachtwerk.essencium.storage.generic.service.StorageServiceDispatcher;
@@ -27,6 +28,7 @@ import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceStorageInfo;
 import de.frachtwerk.essencium.storage.impl.sequence.repository.SequenceFileRepository;
 import java.util.List;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class DefaultSequenceFileService
@@ -34,13 +36,15 @@ public class DefaultSequenceFileService
   public DefaultSequenceFileService(
       StorageServiceDispatcher<SequenceFile, Long, SequenceStorageInfo> dispatcher,
       SequenceFileRepository repository,
-      MimeTypeHelper mimeTypeHelper) {
-    super(dispatcher, repository, mimeTypeHelper);
+      MimeTypeHelper mimeTypeHelper,
+      FileStorageConfiguration config,
+      TransactionTemplate transactionTemplate) {
+    super(dispatcher, repository, mimeTypeHelper, config, transactionTemplate);
   }
 
   @Override
   protected SequenceFile getNewFile(
-      List<SequenceStorageInfo> infos, String name, int length, String mimeType) {
+      List<SequenceStorageInfo> infos, String name, long length, String mimeType) {
     return new SequenceFile(infos, name, length, mimeType);
   }
 }
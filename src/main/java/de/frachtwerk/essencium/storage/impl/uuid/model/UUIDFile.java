@@ -33,12 +33,14 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.BatchSize;
 import org.springframework.core.io.Resource;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
 @NoArgsConstructor
 @Entity(name = "FILE")
+@Table(indexes = @Index(name = "file_content_hash_idx", columnList = "content_hash"))
 @AllArgsConstructor
 public class UUIDFile extends AbstractFile<UUIDFile, UUID, UUIDStorageInfo> {
 
@@ -49,9 +51,10 @@ public class UUIDFile extends AbstractFile<UUIDFile, UUID, UUIDStorageInfo> {
   @NotNull
   @OrderColumn
   @OneToMany(cascade = CascadeType.ALL)
+  @BatchSize(size = 100)
   List<UUIDStorageInfo> storageInfos;
 
-  public UUIDFile(@NotNull List<UUIDStorageInfo> infos, String name, int length, String mimeType) {
+  public UUIDFile(@NotNull List<UUIDStorageInfo> infos, String name, long length, String mimeType) {
     super(name, length, mimeType);
     this.storageInfos = infos;
   }
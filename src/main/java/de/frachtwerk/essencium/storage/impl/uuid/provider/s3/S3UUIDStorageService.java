@@ -21,8 +21,9 @@ package de.frachtwerk.essencium.storage.impl.uuid.provider.s3;
 
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageInfo;
 import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageService;
+import de.frachtwerk.essencium.storage.generic.provider.s3.S3BucketAccessValidator;
+import de.frachtwerk.essencium.storage.generic.provider.s3.S3ClientProvider;
 import de.frachtwerk.essencium.storage.generic.provider.s3.S3StorageConfiguration;
-import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
 import de.frachtwerk.essencium.storage.impl.uuid.model.UUIDFile;
 import de.frachtwerk.essencium.storage.impl.uuid.model.UUIDStorageInfo;
 import jakarta.validation.constraints.NotNull;
@@ -34,8 +35,10 @@ public class S3UUIDStorageService
     extends AbstractS3StorageService<UUIDFile, UUID, UUIDStorageInfo> {
 
   public S3UUIDStorageService(
-      @NotNull S3StorageConfiguration config, MimeTypeHelper mimeTypeHelper) {
-    super(config, mimeTypeHelper);
+      @NotNull S3StorageConfiguration config,
+      @NotNull S3ClientProvider clientProvider,
+      @NotNull S3BucketAccessValidator bucketValidator) {
+    super(config, clientProvider, bucketValidator);
   }
 
   @Override
@@ -19,6 +19,7 @@
 
 package de.frachtwerk.essencium.storage.impl.uuid.service;
 
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
 import de.frachtwerk.essencium.storage.generic.repository.AbstractFileRepository;
 import de.frachtwerk.essencium.storage.generic.service.AbstractFileService;
 import de.frachtwerk.essencium.storage.generic.service.MimeTypeHelper;
@@ -28,19 +29,22 @@ import de.frachtwerk.essencium.storage.impl.uuid.model.UUIDStorageInfo;
 import java.util.List;
 import java.util.UUID;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 public class DefaultUUIDFileService extends AbstractFileService<UUIDFile, UUID, UUIDStorageInfo> {
   public DefaultUUIDFileService(
       StorageServiceDispatcher<UUIDFile, UUID, UUIDStorageInfo> dispatcher,
       AbstractFileRepository<UUIDFile, UUID, UUIDStorageInfo> repository,
-      MimeTypeHelper mimeTypeHelper) {
-    super(dispatcher, repository, mimeTypeHelper);
+      MimeTypeHelper mimeTypeHelper,
+      FileStorageConfiguration config,
+      TransactionTemplate transactionTemplate) {
+    super(dispatcher, repository, mimeTypeHelper, config, transactionTemplate);
   }
 
   @Override
   protected UUIDFile getNewFile(
-      List<UUIDStorageInfo> infos, String name, int length, String mimeType) {
+      List<UUIDStorageInfo> infos, String name, long length, String mimeType) {
     return new UUIDFile(infos, name, length, mimeType);
   }
 }
@@ -0,0 +1,73 @@
+-- Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+--
+-- This file is part of essencium-backend.
+--
+-- essencium-backend is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU Lesser General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- essencium-backend is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+-- GNU Lesser General Public License for more details.
+--
+-- You should have received a copy of the GNU Lesser General Public License
+-- along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+
+-- Upgrades the tables of version 0.22.0 to 0.23.0 (PostgreSQL). Run it once before starting the
+-- application with the new version. Tables that do not exist in your installation are skipped, and
+-- it can be run again on installations whose tables were created by Hibernate to add the indexes.
+
+BEGIN;
+
+-- replicas waiting for the write-behind replication (writeBehind)
+ALTER TABLE IF EXISTS storage_info
+    ADD COLUMN IF NOT EXISTS pending boolean NOT NULL DEFAULT false;
+ALTER TABLE IF EXISTS local_storage_info
+    ADD COLUMN IF NOT EXISTS pending boolean NOT NULL DEFAULT false;
+ALTER TABLE IF EXISTS s3_storage_info
+    ADD COLUMN IF NOT EXISTS pending boolean NOT NULL DEFAULT false;
+
+-- backoff of failed replicas (writeBehind)
+ALTER TABLE IF EXISTS storage_info
+    ADD COLUMN IF NOT EXISTS replication_attempts integer NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS next_replication_attempt timestamp(6) with time zone;
+ALTER TABLE IF EXISTS local_storage_info
+    ADD COLUMN IF NOT EXISTS replication_attempts integer NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS next_replication_attempt timestamp(6) with time zone;
+ALTER TABLE IF EXISTS s3_storage_info
+    ADD COLUMN IF NOT EXISTS replication_attempts integer NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS next_replication_attempt timestamp(6) with time zone;
+
+-- hash of the deduplicated content (deduplicate)
+ALTER TABLE IF EXISTS file
+    ADD COLUMN IF NOT EXISTS content_hash varchar(64);
+
+-- lookups of files with the same content and of storage infos referring to the same stored object
+DO
+$$
+    BEGIN
+        IF to_regclass('file') IS NOT NULL THEN
+            CREATE INDEX IF NOT EXISTS file_content_hash_idx ON file (content_hash);
+        END IF;
+        IF to_regclass('local_storage_info') IS NOT NULL THEN
+            CREATE INDEX IF NOT EXISTS local_storage_info_path_idx ON local_storage_info (path);
+        END IF;
+        IF to_regclass('s3_storage_info') IS NOT NULL THEN
+            CREATE INDEX IF NOT EXISTS s3_storage_info_s3object_key_idx
+                ON s3_storage_info (s3object_key);
+        END IF;
+        -- single-table-orm.xml
+        IF EXISTS (SELECT
+                   FROM information_schema.columns
+                   WHERE table_schema = current_schema()
+                     AND table_name = 'storage_info'
+                     AND column_name = 'path') THEN
+            CREATE INDEX IF NOT EXISTS storage_info_path_idx ON storage_info (path);
+            CREATE INDEX IF NOT EXISTS storage_info_s3object_key_idx ON storage_info (s3object_key);
+        END IF;
+    END
+$$;
+
+COMMIT;
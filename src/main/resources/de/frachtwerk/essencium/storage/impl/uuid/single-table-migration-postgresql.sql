@@ -0,0 +1,61 @@
+-- Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+--
+-- This file is part of essencium-backend.
+--
+-- essencium-backend is free software: you can redistribute it and/or modify
+-- it under the terms of the GNU Lesser General Public License as published by
+-- the Free Software Foundation, either version 3 of the License, or
+-- (at your option) any later version.
+--
+-- essencium-backend is distributed in the hope that it will be useful,
+-- but WITHOUT ANY WARRANTY; without even the implied warranty of
+-- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+-- GNU Lesser General Public License for more details.
+--
+-- You should have received a copy of the GNU Lesser General Public License
+-- along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+
+-- Migrates the storage infos of the uuid implementation from one table per provider to the single
+-- STORAGE_INFO table of single-table-orm.xml (PostgreSQL). Run it once before starting the
+-- application with the new mapping. IDs are kept, so the FILE_STORAGE_INFOS join table stays valid.
+
+BEGIN;
+
+CREATE TABLE storage_info
+(
+    id           uuid NOT NULL PRIMARY KEY,
+    provider     varchar(31)  NOT NULL,
+    created_by   varchar(255),
+    created_at   timestamp(6),
+    updated_by   varchar(255),
+    updated_at   timestamp(6),
+    available    boolean      NOT NULL,
+    pending      boolean      NOT NULL,
+    replication_attempts     integer NOT NULL,
+    next_replication_attempt timestamp(6) with time zone,
+    file_id      uuid REFERENCES file (id),
+    path         varchar(255),
+    s3object_key varchar(255)
+);
+
+INSERT INTO storage_info (id, provider, created_by, created_at, updated_by, updated_at, available,
+                          pending, replication_attempts, next_replication_attempt, file_id, path)
+SELECT id, 'LOCAL', created_by, created_at, updated_by, updated_at, available, pending,
+       replication_attempts, next_replication_attempt, file_id, path
+FROM local_storage_info;
+
+INSERT INTO storage_info (id, provider, created_by, created_at, updated_by, updated_at, available,
+                          pending, replication_attempts, next_replication_attempt, file_id,
+                          s3object_key)
+SELECT id, 'S3', created_by, created_at, updated_by, updated_at, available, pending,
+       replication_attempts, next_replication_attempt, file_id, s3object_key
+FROM s3_storage_info;
+
+CREATE INDEX storage_info_file_id_idx ON storage_info (file_id);
+CREATE INDEX storage_info_path_idx ON storage_info (path);
+CREATE INDEX storage_info_s3object_key_idx ON storage_info (s3object_key);
+
+DROP TABLE local_storage_info;
+DROP TABLE s3_storage_info;
+
+COMMIT;
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+class ZipEntryPrefetcherTest {
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Hand out entries in order, even if they are fetched out of order")
+  void order() throws IOException {
+    List<Resource> resources = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      String content = "entry " + i;
+      resources.add(
+          new StubResource(
+              () -> {
+                sleep(ThreadLocalRandom.current().nextInt(20));
+                return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+              }));
+    }
+
+    try (ZipEntryPrefetcher prefetcher = new ZipEntryPrefetcher(resources, 3, 4, executor)) {
+      for (int i = 0; i < 10; i++) {
+        assertEquals("entry " + i, read(prefetcher.next()));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Open entries on demand without prefetching")
+  void noPrefetching() throws IOException {
+    StubResource first = StubResource.of("first");
+    StubResource second = StubResource.of("second");
+
+    try (ZipEntryPrefetcher prefetcher =
+        new ZipEntryPrefetcher(List.of(first, second), 0, 4, executor)) {
+      assertEquals("first", read(prefetcher.next()));
+      assertFalse(second.opened.get());
+      assertEquals("second", read(prefetcher.next()));
+    }
+  }
+
+  @Test
+  @DisplayName("Fail on the entry that could not be fetched")
+  void failingEntry() throws IOException {
+    StubResource failing =
+        new StubResource(
+            () -> {
+              throw new IOException("storage is down");
+            });
+
+    try (ZipEntryPrefetcher prefetcher =
+        new ZipEntryPrefetcher(List.of(StubResource.of("first"), failing), 2, 4, executor)) {
+      assertEquals("first", read(prefetcher.next()));
+      assertEquals(
+          "storage is down", assertThrows(IOException.class, prefetcher::next).getMessage());
+    }
+  }
+
+  @Test
+  @DisplayName("Cancel fetches and close prefetched streams when the download is aborted")
+  void close() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    AtomicBoolean prefetchedClosed = new AtomicBoolean();
+    Resource prefetched =
+        new StubResource(
+            () -> {
+              started.countDown();
+              return new ByteArrayInputStream(
+                  "prefetched content".getBytes(StandardCharsets.UTF_8)) {
+                @Override
+                public void close() {
+                  prefetchedClosed.set(true);
+                }
+              };
+            });
+    CountDownLatch interrupted = new CountDownLatch(1);
+    Resource stalled =
+        new StubResource(
+            () -> {
+              started.countDown();
+              try {
+                new CountDownLatch(1).await();
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+              throw new InterruptedIOException();
+            });
+
+    ZipEntryPrefetcher prefetcher =
+        new ZipEntryPrefetcher(List.of(prefetched, stalled), 2, 4, executor);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    prefetcher.close();
+
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    assertTrue(prefetchedClosed.get());
+    // the executor is shared with other downloads
+    assertFalse(executor.isShutdown());
+  }
+
+  private static String read(InputStream in) throws IOException {
+    try (in) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static void sleep(long millis) throws IOException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+  }
+
+  @FunctionalInterface
+  interface Opener {
+    InputStream open() throws IOException;
+  }
+
+  static class StubResource extends AbstractResource {
+    final AtomicBoolean opened = new AtomicBoolean();
+    private final Opener opener;
+
+    StubResource(Opener opener) {
+      this.opener = opener;
+    }
+
+    static StubResource of(String content) {
+      return new StubResource(
+          () -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      opened.set(true);
+      return opener.open();
+    }
+
+    @Override
+    public String getDescription() {
+      return "stub resource";
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.local;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class LocalFanOutMigrationTest {
+  @TempDir Path root;
+
+  private final LocalStorageConfiguration config = new LocalStorageConfiguration();
+  private final EntityManager entityManager = mock(EntityManager.class);
+  // absolute paths storage infos refer to
+  private final Set<String> storedPaths = ConcurrentHashMap.newKeySet();
+  private final List<String> updates = Collections.synchronizedList(new ArrayList<>());
+  private LocalFileCreator fileCreator;
+  private LocalFanOutMigration migration;
+
+  @BeforeEach
+  void setUp() {
+    config.setActive(true);
+    config.setPath(root.toString());
+    config.setFanOutDepth(2);
+    fileCreator = new LocalFileCreator(config);
+    migration =
+        new LocalFanOutMigration(
+            config,
+            fileCreator,
+            entityManager,
+            new TransactionTemplate(mock(PlatformTransactionManager.class)));
+    when(entityManager.createQuery(anyString())).thenAnswer(invocation -> updateQuery());
+    when(entityManager.createQuery(anyString(), eq(Long.class)))
+        .thenAnswer(invocation -> countQuery());
+  }
+
+  @Test
+  @DisplayName("Link referenced files into the fan-out layout and keep their old location")
+  void migrate() throws IOException {
+    Path stored = store("stored.txt");
+    Path orphan = Files.writeString(root.resolve("orphan.txt"), "orphan");
+    Path temp = Files.writeString(root.resolve(".upload.txt.123.tmp"), "partial");
+
+    assertEquals(1, migration.migrate(2));
+
+    Path target = fileCreator.resolve("stored.txt");
+    assertTrue(storedPaths.contains(target.toString()));
+    assertTrue(Files.isSameFile(stored, target));
+    assertEquals("stored.txt", Files.readString(target));
+    assertTrue(Files.exists(orphan));
+    assertFalse(Files.exists(fileCreator.resolve("orphan.txt")));
+    assertTrue(Files.exists(temp));
+  }
+
+  @Test
+  @DisplayName("Remove old locations and repoint paths written back since the previous run")
+  void removeOldLocations() throws IOException {
+    Path stored = store("stored.txt");
+    migration.migrate(1);
+    Path target = fileCreator.resolve("stored.txt");
+    // a stale entity saved the old path again
+    storedPaths.remove(target.toString());
+    storedPaths.add(stored.toString());
+    updates.clear();
+
+    assertEquals(0, migration.migrate(1));
+
+    assertFalse(Files.exists(stored));
+    assertEquals("stored.txt", Files.readString(target));
+    assertEquals(Set.of(target.toString()), storedPaths);
+    assertEquals(List.of(stored + " -> " + target), updates);
+  }
+
+  @Test
+  @DisplayName("Leave files in place whose new location is taken by another file")
+  void targetTaken() throws IOException {
+    Path stored = store("stored.txt");
+    Path target = fileCreator.resolve("stored.txt");
+    Files.createDirectories(target.getParent());
+    Files.writeString(target, "other");
+
+    assertEquals(0, migration.migrate(1));
+
+    assertTrue(Files.exists(stored));
+    assertEquals("other", Files.readString(target));
+    assertEquals(Set.of(stored.toString()), storedPaths);
+  }
+
+  @Test
+  @DisplayName("Delete old locations of files deleted since the previous run")
+  void deletedSinceLink() throws IOException {
+    Path stored = store("stored.txt");
+    Files.setLastModifiedTime(stored, FileTime.from(Instant.EPOCH));
+    migration.migrate(1);
+    // the file is deleted, which removes its new location only
+    Path target = fileCreator.resolve("stored.txt");
+    storedPaths.remove(target.toString());
+    Files.delete(target);
+
+    assertEquals(0, migration.migrate(1));
+
+    assertFalse(Files.exists(stored));
+    assertFalse(Files.exists(target));
+  }
+
+  @Test
+  @DisplayName("Restore the new location of a referenced file whose link has been lost")
+  void lostLink() throws IOException {
+    Path stored = store("stored.txt");
+    Files.setLastModifiedTime(stored, FileTime.from(Instant.EPOCH));
+    migration.migrate(1);
+    Path target = fileCreator.resolve("stored.txt");
+    Files.delete(target);
+
+    assertEquals(0, migration.migrate(1));
+
+    assertTrue(Files.isSameFile(stored, target));
+    assertEquals(Set.of(target.toString()), storedPaths);
+  }
+
+  private Path store(String name) throws IOException {
+    Path file = Files.writeString(root.resolve(name), name);
+    storedPaths.add(file.toString());
+    return file;
+  }
+
+  // Emulates the JPQL count of the storage infos with a path.
+  private TypedQuery<Long> countQuery() {
+    Map<String, Object> parameters = new ConcurrentHashMap<>();
+    TypedQuery<Long> query = mock(TypedQuery.class);
+    when(query.setParameter(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              parameters.put(invocation.getArgument(0), invocation.getArgument(1));
+              return query;
+            });
+    when(query.getSingleResult())
+        .thenAnswer(invocation -> storedPaths.contains(parameters.get("path")) ? 1L : 0L);
+    return query;
+  }
+
+  // Emulates the JPQL update of the paths of the storage infos.
+  private Query updateQuery() {
+    Map<String, Object> parameters = new ConcurrentHashMap<>();
+    Query query = mock(Query.class);
+    when(query.setParameter(anyString(), any()))
+        .thenAnswer(
+            invocation -> {
+              parameters.put(invocation.getArgument(0), invocation.getArgument(1));
+              return query;
+            });
+    when(query.executeUpdate())
+        .thenAnswer(
+            invocation -> {
+              String file = (String) parameters.get("file");
+              String target = (String) parameters.get("target");
+              if (!storedPaths.remove(file)) {
+                return 0;
+              }
+              storedPaths.add(target);
+              updates.add(file + " -> " + target);
+              return 1;
+            });
+    return query;
+  }
+}
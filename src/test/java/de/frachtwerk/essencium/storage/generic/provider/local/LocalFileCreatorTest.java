@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.local;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class LocalFileCreatorTest {
+  @TempDir Path root;
+
+  private final LocalStorageConfiguration config = new LocalStorageConfiguration();
+  private LocalFileCreator fileCreator;
+
+  @BeforeEach
+  void setUp() {
+    config.setActive(true);
+    config.setPath(root.toString());
+    fileCreator = new LocalFileCreator(config);
+  }
+
+  @AfterEach
+  void tearDown() {
+    fileCreator.destroy();
+  }
+
+  @ParameterizedTest
+  @EnumSource(FsyncPolicy.class)
+  @DisplayName("Write the complete content and leave no temporary file")
+  void write(FsyncPolicy policy) throws IOException {
+    config.setFsyncPolicy(policy);
+    File file = fileCreator.createFile("test.txt");
+
+    fileCreator.write(file, content("content"), 7);
+
+    assertEquals("content", Files.readString(file.toPath()));
+    assertEquals(List.of(file.toPath()), list());
+  }
+
+  @ParameterizedTest
+  @EnumSource(FsyncPolicy.class)
+  @DisplayName("Replace the content of an existing file")
+  void replace(FsyncPolicy policy) throws IOException {
+    config.setFsyncPolicy(policy);
+    File file = fileCreator.createFile("test.txt");
+    fileCreator.write(file, content("old content"), -1);
+
+    fileCreator.write(file, content("new"), -1);
+
+    assertEquals("new", Files.readString(file.toPath()));
+    assertEquals(List.of(file.toPath()), list());
+  }
+
+  @ParameterizedTest
+  @EnumSource(FsyncPolicy.class)
+  @DisplayName("Delete the file if the content is incomplete")
+  void incomplete(FsyncPolicy policy) throws IOException {
+    config.setFsyncPolicy(policy);
+    File file = fileCreator.createFile("test.txt");
+
+    assertThrows(IOException.class, () -> fileCreator.write(file, content("short"), 10));
+
+    assertFalse(file.exists());
+    assertEquals(List.of(), list());
+  }
+
+  @Test
+  @DisplayName("Delete the file if reading the content fails")
+  void failingContent() throws IOException {
+    File file = fileCreator.createFile("test.txt");
+    InputStream failing =
+        new InputStream() {
+          @Override
+          public int read() throws IOException {
+            throw new IOException("connection reset");
+          }
+        };
+
+    assertThrows(IOException.class, () -> fileCreator.write(file, failing, -1));
+
+    assertFalse(file.exists());
+    assertEquals(List.of(), list());
+  }
+
+  @Test
+  @DisplayName("Commit concurrent writes in shared batches")
+  void groupCommit() throws Exception {
+    config.setFsyncPolicy(FsyncPolicy.GROUP_COMMIT);
+    config.setGroupCommitInterval(Duration.ofMillis(20));
+    List<Future<?>> writes = new ArrayList<>();
+    try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int i = 0; i < 20; i++) {
+        String name = "file" + i;
+        writes.add(
+            executor.submit(
+                () -> {
+                  fileCreator.write(fileCreator.createFile(name), content(name), -1);
+                  return null;
+                }));
+      }
+    }
+    for (Future<?> write : writes) {
+      write.get();
+    }
+
+    assertEquals(20, list().size());
+    for (int i = 0; i < 20; i++) {
+      assertEquals("file" + i, Files.readString(root.resolve("file" + i)));
+    }
+  }
+
+  @Test
+  @DisplayName("Delete temporary files of interrupted writes only")
+  void deleteTempFiles() throws IOException {
+    config.setFanOutDepth(1);
+    Path temp = Files.createDirectories(root.resolve(LocalFileCreator.TEMP_DIRECTORY));
+    Path stale = temp.resolve("test.txt.123.tmp");
+    Files.writeString(stale, "partial");
+    Files.setLastModifiedTime(stale, FileTime.from(Instant.EPOCH));
+    Path recent = temp.resolve("other.txt.456.tmp");
+    Files.writeString(recent, "in progress");
+    // stored files named like temporary files
+    Path stored = Files.createDirectories(root.resolve("ab")).resolve(".backup.2024.tmp");
+    Files.writeString(stored, "content");
+    Files.setLastModifiedTime(stored, FileTime.from(Instant.EPOCH));
+
+    assertEquals(1, fileCreator.deleteTempFiles(root));
+
+    assertFalse(Files.exists(stale));
+    assertTrue(Files.exists(recent));
+    assertTrue(Files.exists(stored));
+  }
+
+  @Test
+  @DisplayName("Keep stored files out of the directory of temporary files")
+  void reservedNames() throws IOException {
+    fileCreator.write(fileCreator.createFile("test.txt"), content("content"), -1);
+
+    assertThrows(FileAlreadyExistsException.class, () -> fileCreator.createFile(".tmp"));
+    assertThrows(IllegalArgumentException.class, () -> fileCreator.resolve(".tmp/test.txt"));
+    assertThrows(IllegalArgumentException.class, () -> fileCreator.resolve(".."));
+    assertThrows(IllegalArgumentException.class, () -> fileCreator.resolve(""));
+  }
+
+  @Test
+  @DisplayName("Resolve names directly in the storage directory without fan-out")
+  void resolveFlat() {
+    assertEquals(root.resolve("test.txt"), fileCreator.resolve("test.txt"));
+  }
+
+  @Test
+  @DisplayName("Resolve names to subdirectories named after the hash of the name")
+  void resolveFanOut() throws IOException {
+    config.setFanOutDepth(2);
+    config.setFanOutWidth(2);
+
+    // SHA-256 of "test.txt" starts with a6ed0c
+    Path path = fileCreator.resolve("test.txt");
+    assertEquals(root.resolve("a6").resolve("ed").resolve("test.txt"), path);
+
+    File file = fileCreator.createFile("test.txt");
+    assertEquals(path, file.toPath());
+  }
+
+  @Test
+  @DisplayName("Reject fan-out layouts deeper than the hash of the name")
+  void resolveTooDeep() {
+    config.setFanOutDepth(33);
+    config.setFanOutWidth(2);
+
+    assertThrows(IllegalStateException.class, () -> fileCreator.resolve("test.txt"));
+  }
+
+  private List<Path> list() throws IOException {
+    try (Stream<Path> files = Files.walk(root)) {
+      return files.filter(Files::isRegularFile).toList();
+    }
+  }
+
+  private static InputStream content(String content) {
+    return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+  }
+}
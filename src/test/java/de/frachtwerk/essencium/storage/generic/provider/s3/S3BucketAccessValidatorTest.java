@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadBucketResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class S3BucketAccessValidatorTest {
+  private static final int CALLERS = 8;
+
+  private final S3Client s3 = mock(S3Client.class);
+  private final S3ClientProvider clientProvider = mock(S3ClientProvider.class);
+  private final S3StorageConfiguration config = new S3StorageConfiguration();
+  private final S3BucketAccessValidator validator =
+      new S3BucketAccessValidator(config, clientProvider);
+
+  @BeforeEach
+  void setUp() {
+    config.setBucketName("bucket");
+    when(clientProvider.getClient()).thenReturn(s3);
+  }
+
+  @Test
+  @DisplayName("Validate only once within the validation interval")
+  void cached() {
+    when(s3.headBucket(any(HeadBucketRequest.class)))
+        .thenReturn(HeadBucketResponse.builder().build());
+
+    validator.ensureAccess();
+    validator.ensureAccess();
+
+    verify(s3, times(1)).headBucket(any(HeadBucketRequest.class));
+  }
+
+  @Test
+  @DisplayName("Validate again once the validation interval has passed")
+  void expired() {
+    config.setBucketValidationInterval(Duration.ZERO);
+    when(s3.headBucket(any(HeadBucketRequest.class)))
+        .thenReturn(HeadBucketResponse.builder().build());
+
+    validator.ensureAccess();
+    validator.ensureAccess();
+
+    verify(s3, times(2)).headBucket(any(HeadBucketRequest.class));
+  }
+
+  @Test
+  @DisplayName("Share a validation between concurrent callers")
+  void concurrentCallers() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(s3.headBucket(any(HeadBucketRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              return HeadBucketResponse.builder().build();
+            });
+
+    List<Future<?>> callers = startCallers(validator::ensureAccess);
+    release.countDown();
+    for (Future<?> caller : callers) {
+      caller.get(5, TimeUnit.SECONDS);
+    }
+
+    verify(s3, times(1)).headBucket(any(HeadBucketRequest.class));
+  }
+
+  @Test
+  @DisplayName("Share a failed validation between concurrent callers")
+  void concurrentCallersFailing() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    when(s3.headBucket(any(HeadBucketRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              throw bucketError("NoSuchBucket");
+            });
+
+    List<Future<?>> callers = startCallers(validator::ensureAccess);
+    release.countDown();
+    for (Future<?> caller : callers) {
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> caller.get(5, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof S3Exception);
+    }
+
+    verify(s3, times(1)).headBucket(any(HeadBucketRequest.class));
+  }
+
+  @Test
+  @DisplayName("Re-validate once for concurrent bucket errors")
+  void concurrentErrors() throws Exception {
+    when(s3.headBucket(any(HeadBucketRequest.class)))
+        .thenReturn(HeadBucketResponse.builder().build());
+    validator.ensureAccess();
+
+    CountDownLatch release = new CountDownLatch(1);
+    when(s3.headBucket(any(HeadBucketRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              return HeadBucketResponse.builder().build();
+            });
+    List<Future<?>> callers = startCallers(() -> validator.onError(bucketError("AccessDenied")));
+    release.countDown();
+    for (Future<?> caller : callers) {
+      caller.get(5, TimeUnit.SECONDS);
+    }
+
+    verify(s3, times(2)).headBucket(any(HeadBucketRequest.class));
+  }
+
+  // Starts the callers and waits until the first one is validating and the others wait for it.
+  private List<Future<?>> startCallers(Runnable call) throws InterruptedException {
+    List<Future<?>> callers = new ArrayList<>();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < CALLERS; i++) {
+      FutureTask<Void> caller = new FutureTask<>(call, null);
+      callers.add(caller);
+      threads.add(Thread.ofPlatform().daemon().start(caller));
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (threads.stream().filter(t -> t.getState() == Thread.State.BLOCKED).count()
+        < CALLERS - 1) {
+      assertTrue(System.nanoTime() < deadline, "callers are not waiting for the validation");
+      Thread.sleep(10);
+    }
+    return callers;
+  }
+
+  private static S3Exception bucketError(String errorCode) {
+    return (S3Exception)
+        S3Exception.builder()
+            .statusCode(403)
+            .awsErrorDetails(AwsErrorDetails.builder().errorCode(errorCode).build())
+            .build();
+  }
+}
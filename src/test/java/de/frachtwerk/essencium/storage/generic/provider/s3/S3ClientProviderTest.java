@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class S3ClientProviderTest {
+  private final S3StorageConfiguration config = new S3StorageConfiguration();
+  private final S3ClientProvider provider = new S3ClientProvider(config);
+
+  @Test
+  @DisplayName("Reject a part size below the S3 minimum on startup")
+  void partSizeTooSmall() {
+    config.setActive(true);
+    config.setMultipartPartSize(DataSize.ofMegabytes(4));
+
+    assertThrows(IllegalStateException.class, provider::afterPropertiesSet);
+  }
+
+  @Test
+  @DisplayName("Accept the minimum part size and ignore the part size if S3 is inactive")
+  void partSizeAccepted() {
+    config.setActive(true);
+    config.setMultipartPartSize(DataSize.ofMegabytes(5));
+    assertDoesNotThrow(provider::afterPropertiesSet);
+
+    config.setActive(false);
+    config.setMultipartPartSize(DataSize.ofBytes(1));
+    assertDoesNotThrow(provider::afterPropertiesSet);
+  }
+}
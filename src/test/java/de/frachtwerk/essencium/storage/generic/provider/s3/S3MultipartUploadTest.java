@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class S3MultipartUploadTest {
+  private static final String KEY = "key";
+
+  private final S3Client s3 = mock(S3Client.class);
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final S3StorageConfiguration config = new S3StorageConfiguration();
+  // content of the uploaded parts by part number
+  private final Map<Integer, String> parts = new ConcurrentHashMap<>();
+
+  @BeforeEach
+  void setUp() {
+    config.setBucketName("bucket");
+    config.setMultipartPartSize(DataSize.ofBytes(4));
+    config.setMultipartConcurrency(2);
+    when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(s3.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenReturn(CompleteMultipartUploadResponse.builder().build());
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Complete the upload with all parts in order, even if they finish out of order")
+  void partOrder() throws IOException {
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation -> {
+              UploadPartRequest request = invocation.getArgument(0);
+              // the first part finishes last
+              if (request.partNumber() == 1) {
+                Thread.sleep(100);
+              }
+              return storePart(request, invocation.getArgument(1));
+            });
+
+    assertEquals(10, upload("abcdefghij", 10));
+
+    assertEquals(Map.of(1, "abcd", 2, "efgh", 3, "ij"), parts);
+    assertEquals(List.of(part(1), part(2), part(3)), completeRequest().multipartUpload().parts());
+    verify(s3, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  @DisplayName("Reject existing objects when completing with conditional writes")
+  void conditionalWrite() throws IOException {
+    answerParts();
+
+    upload("abcdef", -1);
+
+    assertEquals("*", completeRequest().ifNoneMatch());
+  }
+
+  @Test
+  @DisplayName("Retry a part that failed transiently without repeating the others")
+  void retryPart() throws IOException {
+    AtomicInteger attempts = new AtomicInteger();
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation -> {
+              UploadPartRequest request = invocation.getArgument(0);
+              if (request.partNumber() == 2 && attempts.incrementAndGet() == 1) {
+                throw s3Exception(503);
+              }
+              return storePart(request, invocation.getArgument(1));
+            });
+
+    assertEquals(10, upload("abcdefghij", -1));
+
+    assertEquals(2, attempts.get());
+    verify(s3, times(4)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    assertEquals(Map.of(1, "abcd", 2, "efgh", 3, "ij"), parts);
+  }
+
+  @Test
+  @DisplayName("Abort the upload if a part fails for good")
+  void abortOnPermanentFailure() {
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation -> {
+              UploadPartRequest request = invocation.getArgument(0);
+              if (request.partNumber() == 2) {
+                throw s3Exception(403);
+              }
+              return storePart(request, invocation.getArgument(1));
+            });
+
+    S3Exception e = assertThrows(S3Exception.class, () -> upload("abcdefghij", -1));
+
+    assertEquals(403, e.statusCode());
+    verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  @Test
+  @DisplayName("Abort the upload once a part has used up its attempts")
+  void abortAfterMaxAttempts() {
+    config.setMultipartMaxAttempts(2);
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenThrow(s3Exception(500));
+
+    assertThrows(S3Exception.class, () -> upload("abcdef", -1));
+
+    verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  @Test
+  @DisplayName("Abort the upload if the content is shorter than announced")
+  void abortOnIncompleteContent() {
+    answerParts();
+
+    assertThrows(IOException.class, () -> upload("abcdef", 10));
+
+    verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  @Test
+  @DisplayName("Raise the part size if the announced length would exceed the part limit")
+  void raisePartSize() throws IOException {
+    answerParts();
+    int length = S3MultipartUpload.MAX_PARTS * 4 + 1;
+
+    assertEquals(length, upload("a".repeat(length), length));
+
+    assertEquals(S3MultipartUpload.MAX_PARTS * 4 / 5 + 1, parts.size());
+    assertEquals("aaaaa", parts.get(1));
+  }
+
+  @Test
+  @DisplayName("Abort the upload of unknown length once it exceeds the part limit")
+  void abortOnTooManyParts() {
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenReturn(UploadPartResponse.builder().eTag("etag").build());
+
+    IOException e =
+        assertThrows(
+            IOException.class, () -> upload("a".repeat(S3MultipartUpload.MAX_PARTS * 4 + 1), -1));
+
+    assertTrue(e.getMessage().contains("multipartPartSize"));
+    verify(s3, times(S3MultipartUpload.MAX_PARTS))
+        .uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    verify(s3).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  private long upload(String content, long length) throws IOException {
+    InputStream in = new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    return new S3MultipartUpload(s3, executor, config, KEY).upload(in, "text/plain", length);
+  }
+
+  private void answerParts() {
+    when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(invocation -> storePart(invocation.getArgument(0), invocation.getArgument(1)));
+  }
+
+  private UploadPartResponse storePart(UploadPartRequest request, RequestBody body) {
+    try (InputStream in = body.contentStreamProvider().newStream()) {
+      parts.put(request.partNumber(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return UploadPartResponse.builder().eTag("etag-" + request.partNumber()).build();
+  }
+
+  private CompleteMultipartUploadRequest completeRequest() {
+    ArgumentCaptor<CompleteMultipartUploadRequest> request =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(s3).completeMultipartUpload(request.capture());
+    return request.getValue();
+  }
+
+  private static CompletedPart part(int partNumber) {
+    return CompletedPart.builder().partNumber(partNumber).eTag("etag-" + partNumber).build();
+  }
+
+  private static S3Exception s3Exception(int statusCode) {
+    return (S3Exception) S3Exception.builder().statusCode(statusCode).message("error").build();
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.provider.s3;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.Abortable;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+class S3ParallelObjectResourceTest {
+  private static final byte[] CONTENT =
+      "abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8);
+
+  private final S3Client s3 = mock(S3Client.class);
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final List<S3Exception> errors = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Reassemble parts in order, even if they arrive out of order")
+  void reassemble() throws IOException {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    when(s3.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+              try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(20));
+                return respond(invocation.getArgument(0));
+              } finally {
+                running.decrementAndGet();
+              }
+            });
+
+    try (InputStream in = resource(4, 3).getInputStream()) {
+      assertArrayEquals(CONTENT, in.readAllBytes());
+    }
+
+    verify(s3, times(7)).getObject(any(GetObjectRequest.class));
+    assertTrue(maxRunning.get() <= 3);
+  }
+
+  @Test
+  @DisplayName("Request the next part only once a part of the window has been consumed")
+  void window() throws Exception {
+    when(s3.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(invocation -> respond(invocation.getArgument(0)));
+
+    try (InputStream in = resource(4, 2).getInputStream()) {
+      assertEquals('a', in.read());
+      Thread.sleep(100);
+      verify(s3, times(3)).getObject(any(GetObjectRequest.class));
+
+      byte[] rest = in.readAllBytes();
+      assertArrayEquals(Arrays.copyOfRange(CONTENT, 1, CONTENT.length), rest);
+    }
+  }
+
+  @Test
+  @DisplayName("Fail the stream if a part can't be fetched")
+  void failingPart() throws IOException {
+    when(s3.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              GetObjectRequest request = invocation.getArgument(0);
+              if (request.range().startsWith("bytes=8-")) {
+                throw S3Exception.builder().statusCode(500).message("error").build();
+              }
+              return respond(request);
+            });
+
+    try (InputStream in = resource(4, 2).getInputStream()) {
+      assertArrayEquals("abcdefgh".getBytes(StandardCharsets.UTF_8), in.readNBytes(8));
+      assertThrows(IOException.class, in::read);
+    }
+    assertEquals(1, errors.size());
+  }
+
+  @Test
+  @DisplayName("Fail the stream if a part is shorter than requested")
+  void shortPart() {
+    when(s3.getObject(any(GetObjectRequest.class))).thenAnswer(invocation -> response(new byte[2]));
+
+    assertThrows(IOException.class, () -> resource(4, 2).getInputStream().readAllBytes());
+  }
+
+  @Test
+  @DisplayName("Cancel the requests of the window when the stream is closed")
+  void cancelOnClose() throws Exception {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch interrupted = new CountDownLatch(2);
+    when(s3.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              started.countDown();
+              try {
+                new CountDownLatch(1).await();
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+              throw new IllegalStateException("interrupted");
+            });
+
+    InputStream in = resource(4, 2).getInputStream();
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    in.close();
+
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    assertThrows(IOException.class, in::read);
+  }
+
+  @Test
+  @DisplayName("Keep the connections of fully read parts and abort those of unread parts")
+  void reuseConnections() throws IOException {
+    List<Abortable> connections = new ArrayList<>();
+    when(s3.getObject(any(GetObjectRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              Abortable connection = mock(Abortable.class);
+              synchronized (connections) {
+                connections.add(connection);
+              }
+              GetObjectRequest request = invocation.getArgument(0);
+              ResponseInputStream<GetObjectResponse> response = respond(request);
+              return new ResponseInputStream<>(
+                  response.response(), AbortableInputStream.create(response, connection));
+            });
+
+    try (InputStream in = resource(4, 2).getInputStream()) {
+      assertArrayEquals(CONTENT, in.readAllBytes());
+    }
+    assertEquals(7, connections.size());
+    connections.forEach(connection -> verify(connection, never()).abort());
+
+    try (InputStream in =
+        new S3ObjectResource(s3, "bucket", "key", CONTENT.length, errors::add)
+            .getInputStream(0, 8)) {
+      assertEquals('a', in.read());
+    }
+    verify(connections.getLast()).abort();
+  }
+
+  private S3ParallelObjectResource resource(int partSize, int concurrency) {
+    return new S3ParallelObjectResource(
+        s3, "bucket", "key", CONTENT.length, errors::add, executor, partSize, concurrency);
+  }
+
+  // Answers a ranged GET request like S3.
+  private static ResponseInputStream<GetObjectResponse> respond(GetObjectRequest request) {
+    String[] range = request.range().substring("bytes=".length()).split("-");
+    int start = Integer.parseInt(range[0]);
+    int end = Math.min(Integer.parseInt(range[1]) + 1, CONTENT.length);
+    return response(Arrays.copyOfRange(CONTENT, start, end));
+  }
+
+  private static ResponseInputStream<GetObjectResponse> response(byte[] content) {
+    return new ResponseInputStream<>(
+        GetObjectResponse.builder().contentLength((long) content.length).build(),
+        AbortableInputStream.create(new ByteArrayInputStream(content)));
+  }
+}
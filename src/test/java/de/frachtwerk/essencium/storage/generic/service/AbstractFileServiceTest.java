@@ -19,48 +19,79 @@
 
 package de.frachtwerk.essencium.storage.generic.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityFile;
 import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
+import de.frachtwerk.essencium.storage.impl.identity.provider.local.LocalIdentityStorageInfo;
 import de.frachtwerk.essencium.storage.impl.identity.repository.IdentityFileRepository;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @ExtendWith(MockitoExtension.class)
 class AbstractFileServiceTest {
   @Mock private StorageServiceDispatcher<IdentityFile, Long, IdentityStorageInfo> dispatcher;
   @Mock private IdentityFileRepository repository;
   @Mock private MimeTypeHelper mimeTypeHelper;
+  private final FileStorageConfiguration config = new FileStorageConfiguration();
+  @TempDir private Path tempDir;
   private AbstractFileService<IdentityFile, Long, IdentityStorageInfo> service;
 
   @BeforeEach
   void setUp() {
     service =
-        new AbstractFileService<>(dispatcher, repository, mimeTypeHelper) {
+        new AbstractFileService<>(
+            dispatcher,
+            repository,
+            mimeTypeHelper,
+            config,
+            new TransactionTemplate(mock(PlatformTransactionManager.class))) {
           @Override
           protected IdentityFile getNewFile(
-              List<IdentityStorageInfo> infos, String name, int length, String mimeType) {
+              List<IdentityStorageInfo> infos, String name, long length, String mimeType) {
             return new IdentityFile(infos, name, length, mimeType);
           }
         };
@@ -72,7 +103,8 @@ class AbstractFileServiceTest {
     byte[] fileContent = new byte[0];
     IdentityStorageInfo identityStorageInfo = mock(IdentityStorageInfo.class);
     when(identityStorageInfo.isAvailable()).thenReturn(true);
-    when(dispatcher.saveFile("name", fileContent)).thenReturn(List.of(identityStorageInfo));
+    when(dispatcher.saveFile(eq("name"), eq("mimeType"), eq(fileContent), any()))
+        .thenReturn(List.of(identityStorageInfo));
     when(repository.save(any(IdentityFile.class)))
         .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
     try {
@@ -84,7 +116,7 @@ class AbstractFileServiceTest {
     } catch (Exception e) {
       fail(e);
     }
-    verify(dispatcher, times(1)).saveFile("name", fileContent);
+    verify(dispatcher, times(1)).saveFile(eq("name"), eq("mimeType"), eq(fileContent), any());
     verify(repository, times(1)).save(any(IdentityFile.class));
     verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
   }
@@ -95,7 +127,8 @@ class AbstractFileServiceTest {
     byte[] fileContent = new byte[0];
     IdentityStorageInfo identityStorageInfo = mock(IdentityStorageInfo.class);
     when(identityStorageInfo.isAvailable()).thenReturn(true);
-    when(dispatcher.saveFile("name", fileContent)).thenReturn(List.of(identityStorageInfo));
+    when(dispatcher.saveFile(eq("name"), eq("mimeType"), eq(fileContent), any()))
+        .thenReturn(List.of(identityStorageInfo));
     when(repository.save(any(IdentityFile.class)))
         .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
     when(mimeTypeHelper.getMimeType("name", fileContent)).thenReturn("mimeType");
@@ -108,12 +141,167 @@ class AbstractFileServiceTest {
     } catch (Exception e) {
       fail(e);
     }
-    verify(dispatcher, times(1)).saveFile("name", fileContent);
+    verify(dispatcher, times(1)).saveFile(eq("name"), eq("mimeType"), eq(fileContent), any());
     verify(repository, times(1)).save(any(IdentityFile.class));
     verify(mimeTypeHelper, times(1)).getMimeType("name", fileContent);
     verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
   }
 
+  @Test
+  @DisplayName("Store streamed file without mime type given")
+  void storeStreamedFileWithoutMimeType() throws IOException {
+    byte[] fileContent = "content".getBytes();
+    IdentityStorageInfo identityStorageInfo = mock(IdentityStorageInfo.class);
+    when(identityStorageInfo.isAvailable()).thenReturn(true);
+    when(dispatcher.saveFile(eq("name"), eq("mimeType"), any(InputStream.class), eq(-1L), any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              InputStream content = invocationOnMock.getArgument(2);
+              assertArrayEquals(fileContent, content.readAllBytes());
+              return List.of(identityStorageInfo);
+            });
+    when(repository.save(any(IdentityFile.class)))
+        .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
+    when(mimeTypeHelper.getMimeType("name", fileContent)).thenReturn("mimeType");
+    try {
+      IdentityFile file =
+          service.storeFile("name", null, new ByteArrayInputStream(fileContent), -1L);
+      assertNotNull(file);
+      assertEquals("name", file.getName());
+      assertEquals(fileContent.length, file.getSize());
+      assertEquals("mimeType", file.getMimeType());
+      assertTrue(file.isAvailable());
+    } catch (Exception e) {
+      fail(e);
+    }
+    verify(dispatcher, times(1))
+        .saveFile(eq("name"), eq("mimeType"), any(InputStream.class), eq(-1L), any());
+    verify(repository, times(1)).save(any(IdentityFile.class));
+    verify(mimeTypeHelper, times(1)).getMimeType("name", fileContent);
+    verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
+  }
+
+  @Test
+  @DisplayName("Delete replicas finishing after a failed upload")
+  void deleteLateReplicaOfFailedUpload() throws IOException {
+    byte[] fileContent = new byte[0];
+    IdentityStorageInfo lateInfo = new IdentityStorageInfo();
+    List<Consumer<IdentityStorageInfo>> lateReplicas = new ArrayList<>();
+    when(dispatcher.saveFile(eq("name"), eq("mimeType"), eq(fileContent), any()))
+        .thenAnswer(
+            invocationOnMock -> {
+              lateReplicas.add(invocationOnMock.getArgument(3));
+              throw new IOException("Write policy not met");
+            });
+
+    assertThrows(IOException.class, () -> service.storeFile("name", "mimeType", fileContent));
+    lateReplicas.getFirst().accept(lateInfo);
+
+    verify(dispatcher, times(1)).deleteFile(lateInfo);
+    verify(repository, never()).save(any(IdentityFile.class));
+  }
+
+  @Test
+  @DisplayName("Store duplicate content as reference without writing it")
+  void storeDeduplicatedFile() throws IOException {
+    config.setDeduplicate(true);
+    String contentHash = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+    IdentityFile existing = new IdentityFile();
+    existing.setId(1L);
+    existing.setSize(7);
+    LocalIdentityStorageInfo existingInfo = new LocalIdentityStorageInfo(existing, "/files/a");
+    existingInfo.setAvailable(true);
+    existing.setStorageInfos(List.of(existingInfo));
+    when(repository.findForUpdateByContentHash(contentHash, Limit.of(1)))
+        .thenReturn(List.of(existing));
+    when(dispatcher.referenceFile(existingInfo))
+        .thenReturn(new LocalIdentityStorageInfo(null, "/files/a"));
+    when(repository.save(any(IdentityFile.class)))
+        .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
+    when(dispatcher.spoolsUploads()).thenReturn(true);
+    Path spool = tempDir.resolve("spool");
+    when(dispatcher.spool(any(InputStream.class), eq(-1L)))
+        .thenAnswer(
+            invocationOnMock -> {
+              Files.copy(invocationOnMock.<InputStream>getArgument(0), spool);
+              return spool;
+            });
+
+    IdentityFile file =
+        service.storeFile("name", "mimeType", new ByteArrayInputStream("content".getBytes()), -1L);
+
+    assertEquals(contentHash, file.getContentHash());
+    assertEquals(7, file.getSize());
+    assertEquals(1, file.getStorageInfos().size());
+    LocalIdentityStorageInfo info = (LocalIdentityStorageInfo) file.getStorageInfos().getFirst();
+    assertEquals("/files/a", info.getPath());
+    assertEquals(file, info.getFile());
+    assertFalse(Files.exists(spool));
+    verify(dispatcher, times(1)).spoolsUploads();
+    verify(dispatcher, times(1)).spool(any(InputStream.class), eq(-1L));
+    verify(dispatcher, times(1)).referenceFile(existingInfo);
+    verify(dispatcher, never()).saveFile(any(), any(), any(Path.class), any(Long.class), any());
+    verifyNoMoreInteractions(dispatcher);
+  }
+
+  @Test
+  @DisplayName("Hash unspooled content while writing it and delete it again if it is a duplicate")
+  void storeDeduplicatedFileUnspooled() throws IOException {
+    config.setDeduplicate(true);
+    String contentHash = "ed7002b439e9ac845f22357d822bac1444730fbdb6016d3ec9432297b9ec9f73";
+    IdentityFile existing = new IdentityFile();
+    existing.setId(1L);
+    existing.setSize(7);
+    LocalIdentityStorageInfo existingInfo = new LocalIdentityStorageInfo(existing, "/files/a");
+    existingInfo.setAvailable(true);
+    existing.setStorageInfos(List.of(existingInfo));
+    LocalIdentityStorageInfo written = new LocalIdentityStorageInfo(null, "/files/b");
+    when(dispatcher.saveFile(eq("name"), eq("mimeType"), any(InputStream.class), eq(-1L)))
+        .thenAnswer(
+            invocationOnMock -> {
+              invocationOnMock
+                  .<InputStream>getArgument(2)
+                  .transferTo(OutputStream.nullOutputStream());
+              return List.of(written);
+            });
+    when(repository.findForUpdateByContentHash(contentHash, Limit.of(1)))
+        .thenReturn(List.of(existing));
+    when(dispatcher.referenceFile(existingInfo))
+        .thenReturn(new LocalIdentityStorageInfo(null, "/files/a"));
+    when(repository.save(any(IdentityFile.class)))
+        .thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
+
+    IdentityFile file =
+        service.storeFile("name", "mimeType", new ByteArrayInputStream("content".getBytes()), -1L);
+
+    assertEquals(contentHash, file.getContentHash());
+    assertEquals(
+        "/files/a", ((LocalIdentityStorageInfo) file.getStorageInfos().getFirst()).getPath());
+    verify(dispatcher, times(1)).deleteFile(written);
+    verify(dispatcher, never()).spool(any(InputStream.class), any(Long.class));
+  }
+
+  @Test
+  @DisplayName("Delete shared content with its last reference only")
+  void deleteDeduplicatedFile() {
+    IdentityFile file = new IdentityFile();
+    file.setId(1L);
+    file.setContentHash("hash");
+    LocalIdentityStorageInfo info = new LocalIdentityStorageInfo(file, "/files/a");
+    file.setStorageInfos(List.of(info));
+    when(repository.findById(1L)).thenReturn(Optional.of(file));
+    when(repository.countLocalStorageInfosByPath("/files/a")).thenReturn(1L, 0L);
+    when(dispatcher.deleteFile(info)).thenReturn(true);
+
+    assertTrue(service.deleteFile(1L));
+    verify(dispatcher, never()).deleteFile(info);
+
+    assertTrue(service.deleteFile(1L));
+    verify(dispatcher, times(1)).deleteFile(info);
+    verify(repository, times(2)).delete(file);
+    verify(repository, times(2)).findForUpdateByContentHash("hash", Limit.of(1));
+  }
+
   @Test
   @DisplayName("Load available file")
   void loadFile() {
@@ -123,7 +311,7 @@ class AbstractFileServiceTest {
     file.setId(42L);
     file.setStorageInfos(List.of(identityStorageInfo));
 
-    when(repository.findById(42L)).thenReturn(Optional.of(file));
+    when(repository.findWithStorageInfosById(42L)).thenReturn(Optional.of(file));
 
     when(dispatcher.loadFile(identityStorageInfo))
         .thenAnswer(
@@ -144,7 +332,7 @@ class AbstractFileServiceTest {
       fail(e);
     }
     verify(dispatcher, times(1)).loadFile(identityStorageInfo);
-    verify(repository, times(1)).findById(42L);
+    verify(repository, times(1)).findWithStorageInfosById(42L);
     verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
   }
 
@@ -159,7 +347,7 @@ class AbstractFileServiceTest {
     file.setId(42L);
     file.setStorageInfos(List.of(identityStorageInfo));
 
-    when(repository.findById(42L)).thenReturn(Optional.of(file));
+    when(repository.findWithStorageInfosById(42L)).thenReturn(Optional.of(file));
 
     when(dispatcher.loadFile(identityStorageInfo))
         .thenAnswer(
@@ -182,8 +370,8 @@ class AbstractFileServiceTest {
     }
 
     verify(dispatcher, times(1)).loadFile(identityStorageInfo);
-    verify(repository, times(1)).findById(42L);
-    verify(repository, times(1)).save(file);
+    verify(repository, times(1)).findWithStorageInfosById(42L);
+    verify(repository, times(1)).findForUpdateById(42L);
     verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
   }
 
@@ -196,7 +384,7 @@ class AbstractFileServiceTest {
     file.setId(42L);
     file.setStorageInfos(List.of(identityStorageInfo));
 
-    when(repository.findById(42L)).thenReturn(Optional.of(file));
+    when(repository.findWithStorageInfosById(42L)).thenReturn(Optional.of(file));
 
     try {
       Optional<IdentityFile> loadedFile = service.loadFile(42L);
@@ -208,7 +396,7 @@ class AbstractFileServiceTest {
     } catch (Exception e) {
       fail(e);
     }
-    verify(repository, times(1)).findById(42L);
+    verify(repository, times(1)).findWithStorageInfosById(42L);
     verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
   }
 
@@ -220,13 +408,14 @@ class AbstractFileServiceTest {
     file.setId(42L);
     file.setStorageInfos(List.of(identityStorageInfo));
 
-    when(repository.findAll()).thenReturn(List.of(file));
+    when(repository.findAllWithStorageInfos()).thenReturn(List.of(file));
 
+    Resource content = mock(Resource.class);
     when(dispatcher.loadFile(identityStorageInfo))
         .thenAnswer(
             invocationOnMock -> {
               IdentityStorageInfo argument = invocationOnMock.getArgument(0);
-              argument.setContent(mock(Resource.class));
+              argument.setContent(content);
               return argument;
             });
 
@@ -238,11 +427,70 @@ class AbstractFileServiceTest {
       assertTrue(loadedFiles.getFirst().isAvailable());
       assertNotNull(loadedFiles.getFirst().getStorageInfos());
       assertNotNull(loadedFiles.getFirst().getContent());
+      // the content is not loaded from the provider before it is read
+      verifyNoMoreInteractions(dispatcher);
+
+      when(content.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+      loadedFiles.getFirst().getContent().getInputStream();
     } catch (Exception e) {
       fail(e);
     }
     verify(dispatcher, times(1)).loadFile(identityStorageInfo);
-    verify(repository, times(1)).findAll();
+    verify(repository, times(1)).findAllWithStorageInfos();
+    verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
+  }
+
+  @Test
+  void getAllPaged() {
+    IdentityFile file = new IdentityFile();
+    IdentityStorageInfo identityStorageInfo = new IdentityStorageInfo();
+    identityStorageInfo.setAvailable(true);
+    file.setId(42L);
+    file.setStorageInfos(List.of(identityStorageInfo));
+
+    Pageable pageable = PageRequest.of(1, 10);
+    when(repository.findAll(pageable)).thenReturn(new PageImpl<>(List.of(file), pageable, 11));
+
+    Page<IdentityFile> page = service.getAll(pageable);
+    assertEquals(11, page.getTotalElements());
+    assertEquals(42L, page.getContent().getFirst().getId());
+    assertNotNull(page.getContent().getFirst().getContent());
+    verify(repository, times(1)).findAll(pageable);
+    verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
+  }
+
+  @Test
+  void getSlice() {
+    IdentityFile file = new IdentityFile();
+    file.setId(42L);
+    file.setStorageInfos(List.of());
+
+    Pageable pageable = PageRequest.of(0, 1);
+    when(repository.findAllBy(pageable)).thenReturn(new SliceImpl<>(List.of(file), pageable, true));
+
+    Slice<IdentityFile> slice = service.getSlice(pageable);
+    assertTrue(slice.hasNext());
+    assertEquals(42L, slice.getContent().getFirst().getId());
+    verify(repository, times(1)).findAllBy(pageable);
+    verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
+  }
+
+  @Test
+  void streamAll() {
+    IdentityFile file = new IdentityFile();
+    IdentityStorageInfo identityStorageInfo = new IdentityStorageInfo();
+    identityStorageInfo.setAvailable(true);
+    file.setId(42L);
+    file.setStorageInfos(List.of(identityStorageInfo));
+
+    when(repository.streamAll()).thenReturn(Stream.of(file));
+
+    try (Stream<IdentityFile> files = service.streamAll()) {
+      List<IdentityFile> loadedFiles = files.toList();
+      assertEquals(1, loadedFiles.size());
+      assertNotNull(loadedFiles.getFirst().getContent());
+    }
+    verify(repository, times(1)).streamAll();
     verifyNoMoreInteractions(dispatcher, repository, mimeTypeHelper);
   }
 
@@ -258,11 +506,12 @@ class AbstractFileServiceTest {
 
     when(repository.findAll(specification)).thenReturn(List.of(file));
 
+    Resource content = mock(Resource.class);
     when(dispatcher.loadFile(identityStorageInfo))
         .thenAnswer(
             invocationOnMock -> {
               IdentityStorageInfo argument = invocationOnMock.getArgument(0);
-              argument.setContent(mock(Resource.class));
+              argument.setContent(content);
               return argument;
             });
 
@@ -274,6 +523,11 @@ class AbstractFileServiceTest {
       assertTrue(loadedFiles.getFirst().isAvailable());
       assertNotNull(loadedFiles.getFirst().getStorageInfos());
       assertNotNull(loadedFiles.getFirst().getContent());
+      // the content is not loaded from the provider before it is read
+      verifyNoMoreInteractions(dispatcher);
+
+      when(content.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+      loadedFiles.getFirst().getContent().getInputStream();
     } catch (Exception e) {
       fail(e);
     }
@@ -293,7 +547,50 @@ class AbstractFileServiceTest {
   }
 
   @Test
+  @DisplayName("Mark only the storage info of the current file as unavailable")
   void markAsUnavailable() {
-    // TODO: Implement
+    IdentityFile stale = new IdentityFile();
+    stale.setId(42L);
+    LocalIdentityStorageInfo local = new LocalIdentityStorageInfo(stale, "/files/a");
+    local.setId(1L);
+    local.setAvailable(true);
+    LocalIdentityStorageInfo replica = new LocalIdentityStorageInfo(stale, "/files/b");
+    replica.setId(2L);
+    replica.setPending(true);
+    stale.setStorageInfos(List.of(local, replica));
+
+    // the replica has been written since the stale file was loaded
+    IdentityFile current = new IdentityFile();
+    current.setId(42L);
+    LocalIdentityStorageInfo currentLocal = new LocalIdentityStorageInfo(current, "/files/a");
+    currentLocal.setId(1L);
+    currentLocal.setAvailable(true);
+    LocalIdentityStorageInfo currentReplica = new LocalIdentityStorageInfo(current, "/files/b");
+    currentReplica.setId(2L);
+    currentReplica.setAvailable(true);
+    current.setStorageInfos(List.of(currentLocal, currentReplica));
+    when(repository.findForUpdateById(42L)).thenReturn(Optional.of(current));
+
+    service.markAsUnavailable(local);
+
+    assertFalse(local.isAvailable());
+    assertFalse(currentLocal.isAvailable());
+    assertTrue(currentReplica.isAvailable());
+    assertFalse(currentReplica.isPending());
+    verify(repository, never()).save(any(IdentityFile.class));
+  }
+
+  @Test
+  @DisplayName("Leave pending replicas untouched")
+  void markPendingAsUnavailable() {
+    IdentityFile file = new IdentityFile();
+    file.setId(42L);
+    LocalIdentityStorageInfo replica = new LocalIdentityStorageInfo(file, "/files/b");
+    replica.setPending(true);
+    file.setStorageInfos(List.of(replica));
+
+    service.markAsUnavailable(replica);
+
+    verifyNoMoreInteractions(repository);
   }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+class MimeTypeHelperTest {
+  private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0};
+  private static final byte[] PDF = "%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII);
+
+  private final MimeTypeHelper helper = new MimeTypeHelper();
+
+  @Test
+  @DisplayName("Detect mime type by file extension")
+  void detectByExtension() {
+    assertEquals("text/plain", helper.getMimeType("notes.txt", new byte[0]));
+    assertEquals("application/pdf", helper.getMimeType("Report.PDF", new byte[0]));
+  }
+
+  @Test
+  @DisplayName("Extension takes precedence over content")
+  void extensionBeforeContent() {
+    assertEquals("text/csv", helper.getMimeType("data.csv", PNG));
+  }
+
+  @Test
+  @DisplayName("Detect mime type by magic bytes if extension is missing or unknown")
+  void detectByContent() {
+    assertEquals("image/png", helper.getMimeType("0192f1c2-7d1a", PNG));
+    assertEquals("application/pdf", helper.getMimeType("upload.unknownext", PDF));
+  }
+
+  @Test
+  @DisplayName("Return null for unknown content without extension")
+  void unknown() {
+    assertNull(helper.getMimeType("name", new byte[] {1, 2, 3}));
+    assertNull(helper.getMimeType("name", new byte[0]));
+  }
+
+  @Test
+  @DisplayName("Custom signatures are checked before the built-in ones")
+  void customSignature() {
+    StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+    beanFactory.addBean("pdfa", MimeTypeSignature.ascii("application/x-custom-pdf", "%PDF-1.7"));
+    MimeTypeHelper custom =
+        new MimeTypeHelper(beanFactory.getBeanProvider(MimeTypeSignature.class));
+
+    assertEquals("application/x-custom-pdf", custom.getMimeType("name", PDF));
+    assertEquals("image/png", custom.getMimeType("name", PNG));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import java.time.Duration;
+import java.util.Comparator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ProviderStatisticsTest {
+  private static final long PROBE_INTERVAL = Duration.ofHours(1).toNanos();
+
+  private final ProviderStatistics statistics =
+      new ProviderStatistics(0.5, 0.25, PROBE_INTERVAL, 16);
+
+  @Test
+  @DisplayName("Order faster providers first")
+  void fasterFirst() {
+    statistics.recordSuccess(Providers.LOCAL, 2_000);
+    statistics.recordSuccess(Providers.S3, 1_000);
+
+    assertTrue(statistics.fastestFirst().compare(Providers.S3, Providers.LOCAL) < 0);
+  }
+
+  @Test
+  @DisplayName("Order unhealthy providers last regardless of their latency")
+  void unhealthyLast() {
+    statistics.recordFailure(Providers.S3, 1_000);
+    statistics.recordSuccess(Providers.LOCAL, 2_000);
+
+    assertFalse(statistics.isHealthy(Providers.S3));
+    assertTrue(statistics.fastestFirst().compare(Providers.LOCAL, Providers.S3) < 0);
+  }
+
+  @Test
+  @DisplayName("Keep the order of a comparator while new reads are recorded")
+  void snapshot() {
+    statistics.recordSuccess(Providers.LOCAL, 1_000);
+    statistics.recordSuccess(Providers.S3, 2_000);
+    Comparator<Providers> order = statistics.fastestFirst();
+
+    statistics.recordFailure(Providers.LOCAL, 1_000);
+    statistics.recordSuccess(Providers.S3, 100);
+
+    assertTrue(order.compare(Providers.LOCAL, Providers.S3) < 0);
+    assertTrue(statistics.fastestFirst().compare(Providers.LOCAL, Providers.S3) > 0);
+  }
+
+  @Test
+  @DisplayName("Compute latency percentiles once enough reads are recorded")
+  void percentile() {
+    for (int i = 1; i <= 9; i++) {
+      statistics.recordSuccess(Providers.S3, i * 1_000L);
+    }
+    assertEquals(-1, statistics.getLatencyPercentileNanos(Providers.S3, 0.9));
+
+    statistics.recordSuccess(Providers.S3, 10_000);
+
+    assertEquals(9_000, statistics.getLatencyPercentileNanos(Providers.S3, 0.9));
+    assertEquals(10_000, statistics.getLatencyPercentileNanos(Providers.S3, 1));
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.AbstractResource;
+
+class ReplicatedResourceTest {
+  private final FileStorageConfiguration config = new FileStorageConfiguration();
+  private final ProviderStatistics statistics =
+      new ProviderStatistics(0.5, 0.5, Duration.ofHours(1).toNanos(), 16);
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Read from the replica of the fastest provider")
+  void fastestFirst() throws IOException {
+    statistics.recordSuccess(Providers.LOCAL, 2_000);
+    statistics.recordSuccess(Providers.S3, 1_000);
+    StubResource local = StubResource.answering("local");
+    StubResource s3 = StubResource.answering("s3");
+
+    assertEquals("s3", read(resource(local, s3)));
+    assertEquals(0, local.opened.get());
+  }
+
+  @Test
+  @DisplayName("Read in the persisted order without latency-aware reads")
+  void persistedOrder() throws IOException {
+    config.setLatencyAwareReads(false);
+    statistics.recordSuccess(Providers.LOCAL, 2_000);
+    statistics.recordSuccess(Providers.S3, 1_000);
+
+    assertEquals(
+        "local", read(resource(StubResource.answering("local"), StubResource.answering("s3"))));
+  }
+
+  @Test
+  @DisplayName("Fail over to the next replica and record the failure")
+  void failover() throws IOException {
+    StubResource local = StubResource.failing("local");
+    StubResource s3 = StubResource.answering("s3");
+
+    assertEquals("s3", read(resource(local, s3)));
+    assertEquals(1, local.opened.get());
+    assertFalse(statistics.isHealthy(Providers.LOCAL));
+    assertTrue(statistics.isHealthy(Providers.S3));
+  }
+
+  @Test
+  @DisplayName("Fail over if a replica fails before its first byte")
+  void failoverOnFirstByte() throws IOException {
+    StubResource local =
+        new StubResource(
+            "local",
+            () ->
+                new InputStream() {
+                  @Override
+                  public int read() throws IOException {
+                    throw new IOException("connection reset");
+                  }
+                });
+
+    assertEquals("s3", read(resource(local, StubResource.answering("s3"))));
+  }
+
+  @Test
+  @DisplayName("Report every failure if no replica can be read")
+  void allFailing() {
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () ->
+                resource(StubResource.failing("local"), StubResource.failing("s3"))
+                    .getInputStream());
+
+    assertEquals("local is down", e.getMessage());
+    assertEquals("s3 is down", e.getSuppressed()[0].getMessage());
+  }
+
+  @Test
+  @DisplayName("Read byte ranges from the replica that is read from")
+  void range() throws IOException {
+    StubResource local = StubResource.failing("local");
+
+    try (InputStream in = resource(local, StubResource.answering("content")).getInputStream(2, 3)) {
+      assertArrayEquals("nte".getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+    }
+  }
+
+  @Test
+  @DisplayName("Hedge a stalled read and cancel it once another replica has answered")
+  void hedgeStalledRead() throws Exception {
+    config.setHedgedReads(true);
+    config.setHedgeDefaultDelay(Duration.ofMillis(50));
+    CountDownLatch interrupted = new CountDownLatch(1);
+    StubResource local = StubResource.stalling("local", interrupted);
+    StubResource s3 = StubResource.answering("s3");
+
+    assertEquals("s3", read(resource(local, s3)));
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    assertTrue(statistics.isHealthy(Providers.LOCAL));
+    assertEquals(0, statistics.getLatencyNanos(Providers.LOCAL));
+    assertTrue(statistics.getLatencyNanos(Providers.S3) > 0);
+  }
+
+  @Test
+  @DisplayName("Hedge after the latency percentile of the preferred provider")
+  void hedgeAfterPercentile() {
+    config.setHedgedReads(true);
+    config.setLatencyAwareReads(false);
+    config.setHedgeDefaultDelay(Duration.ofHours(1));
+    config.setHedgeMinDelay(Duration.ofMillis(10));
+    for (int i = 0; i < 16; i++) {
+      statistics.recordSuccess(Providers.LOCAL, Duration.ofMillis(1).toNanos());
+    }
+    StubResource local = StubResource.stalling("local", new CountDownLatch(1));
+
+    assertEquals(
+        "s3",
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(5), () -> read(resource(local, StubResource.answering("s3")))));
+  }
+
+  @Test
+  @DisplayName("Do not hedge if the preferred replica answers in time")
+  void noHedge() throws IOException {
+    config.setHedgedReads(true);
+    config.setHedgeDefaultDelay(Duration.ofSeconds(5));
+    StubResource s3 = StubResource.answering("s3");
+
+    assertEquals("local", read(resource(StubResource.answering("local"), s3)));
+    assertEquals(0, s3.opened.get());
+  }
+
+  @Test
+  @DisplayName("Fail over at once if the preferred replica fails before the hedge delay")
+  void hedgedFailover() {
+    config.setHedgedReads(true);
+    config.setHedgeDefaultDelay(Duration.ofHours(1));
+    StubResource local = StubResource.failing("local");
+
+    assertEquals(
+        "s3",
+        assertTimeoutPreemptively(
+            Duration.ofSeconds(5), () -> read(resource(local, StubResource.answering("s3")))));
+    assertFalse(statistics.isHealthy(Providers.LOCAL));
+  }
+
+  @Test
+  @DisplayName("Report every failure if no hedged read succeeds")
+  void hedgedAllFailing() {
+    config.setHedgedReads(true);
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () ->
+                resource(StubResource.failing("local"), StubResource.failing("s3"))
+                    .getInputStream());
+
+    assertEquals(1, e.getSuppressed().length);
+  }
+
+  ReplicatedResource resource(StubResource local, StubResource s3) {
+    return new ReplicatedResource(
+        List.of(
+            new ReplicatedResource.Replica(Providers.LOCAL, local),
+            new ReplicatedResource.Replica(Providers.S3, s3)),
+        statistics,
+        config,
+        executor);
+  }
+
+  static String read(ReplicatedResource resource) throws IOException {
+    try (InputStream in = resource.getInputStream()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @FunctionalInterface
+  interface Opener {
+    InputStream open() throws IOException;
+  }
+
+  static class StubResource extends AbstractResource {
+    final AtomicInteger opened = new AtomicInteger();
+    private final String name;
+    private final Opener opener;
+
+    StubResource(String name, Opener opener) {
+      this.name = name;
+      this.opener = opener;
+    }
+
+    static StubResource answering(String content) {
+      return new StubResource(
+          content, () -> new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static StubResource failing(String name) {
+      return new StubResource(
+          name,
+          () -> {
+            throw new IOException(name + " is down");
+          });
+    }
+
+    // never answers, counts down the latch once its read is interrupted
+    static StubResource stalling(String name, CountDownLatch interrupted) {
+      return new StubResource(
+          name,
+          () -> {
+            try {
+              new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+              interrupted.countDown();
+            }
+            throw new InterruptedIOException(name + " was interrupted");
+          });
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      opened.incrementAndGet();
+      return opener.open();
+    }
+
+    @Override
+    public String getDescription() {
+      return name;
+    }
+  }
+}
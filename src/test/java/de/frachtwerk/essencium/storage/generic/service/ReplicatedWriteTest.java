@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ReplicatedWriteTest {
+  private static final Executor DIRECT = Runnable::run;
+  private static final Executor THREADS = task -> Thread.ofVirtual().start(task);
+
+  private final Set<String> rolledBack = ConcurrentHashMap.newKeySet();
+  private final Set<String> late = ConcurrentHashMap.newKeySet();
+
+  private ReplicatedWrite<String> replicatedWrite(List<Providers> providers, int required) {
+    return new ReplicatedWrite<>(providers, required, rolledBack::add, late::add);
+  }
+
+  @Test
+  @DisplayName("ALL returns the replicas of every provider in provider order")
+  void all() throws IOException {
+    List<String> replicas =
+        replicatedWrite(List.of(Providers.LOCAL, Providers.S3), 2)
+            .run(Providers::name, THREADS, () -> {});
+
+    assertEquals(List.of("LOCAL", "S3"), replicas);
+    assertTrue(rolledBack.isEmpty());
+    assertTrue(late.isEmpty());
+  }
+
+  @Test
+  @DisplayName("QUORUM tolerates the failure of a minority of the providers")
+  void quorum() throws IOException {
+    AtomicInteger locals = new AtomicInteger();
+
+    List<String> replicas =
+        replicatedWrite(List.of(Providers.LOCAL, Providers.S3, Providers.LOCAL), 2)
+            .run(
+                provider -> {
+                  if (provider == Providers.S3) {
+                    throw new IOException("S3 is down");
+                  }
+                  return "LOCAL-" + locals.incrementAndGet();
+                },
+                DIRECT,
+                () -> {});
+
+    assertEquals(List.of("LOCAL-1", "LOCAL-2"), replicas);
+    assertTrue(rolledBack.isEmpty());
+  }
+
+  @Test
+  @DisplayName("FIRST returns after one provider and hands the others to the listener")
+  void first() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch lateArrived = new CountDownLatch(1);
+    ReplicatedWrite<String> write =
+        new ReplicatedWrite<>(
+            List.of(Providers.LOCAL, Providers.S3),
+            1,
+            rolledBack::add,
+            info -> {
+              late.add(info);
+              lateArrived.countDown();
+            });
+
+    List<String> replicas =
+        write.run(
+            provider -> {
+              if (provider == Providers.S3) {
+                awaitQuietly(release);
+              }
+              return provider.name();
+            },
+            THREADS,
+            () -> {});
+
+    assertEquals(List.of("LOCAL"), replicas);
+    release.countDown();
+    assertTrue(lateArrived.await(5, TimeUnit.SECONDS));
+    assertEquals(Set.of("S3"), late);
+    assertTrue(rolledBack.isEmpty());
+  }
+
+  @Test
+  @DisplayName("Roll back the written replicas if the policy can no longer be met")
+  void rollBack() {
+    ReplicatedWrite<String> write = replicatedWrite(List.of(Providers.LOCAL, Providers.S3), 2);
+
+    IOException e =
+        assertThrows(
+            IOException.class,
+            () ->
+                write.run(
+                    provider -> {
+                      if (provider == Providers.S3) {
+                        throw new IOException("S3 is down");
+                      }
+                      return provider.name();
+                    },
+                    DIRECT,
+                    () -> {}));
+
+    assertEquals("S3 is down", e.getMessage());
+    assertEquals(Set.of("LOCAL"), rolledBack);
+    assertTrue(late.isEmpty());
+  }
+
+  @Test
+  @DisplayName("Roll back a replica that succeeds while the failed write is rolled back")
+  void lateSuccessAfterFailure() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch secondFinished = new CountDownLatch(1);
+    AtomicInteger locals = new AtomicInteger();
+    AtomicInteger submitted = new AtomicInteger();
+    // the second write runs on its own thread, the others run on the calling thread
+    Executor executor =
+        task -> {
+          if (submitted.incrementAndGet() == 2) {
+            THREADS.execute(task);
+          } else {
+            task.run();
+          }
+        };
+    ReplicatedWrite<String> write =
+        new ReplicatedWrite<>(
+            List.of(Providers.LOCAL, Providers.LOCAL, Providers.S3),
+            3,
+            info -> {
+              rolledBack.add(info);
+              if (info.equals("LOCAL-1")) {
+                // let the second write succeed before the failure has been fully handled
+                release.countDown();
+                awaitQuietly(secondFinished);
+              } else {
+                secondFinished.countDown();
+              }
+            },
+            info -> {
+              late.add(info);
+              secondFinished.countDown();
+            });
+
+    assertThrows(
+        IOException.class,
+        () ->
+            write.run(
+                provider -> {
+                  if (provider == Providers.S3) {
+                    throw new IOException("S3 is down");
+                  }
+                  int local = locals.incrementAndGet();
+                  if (local == 2) {
+                    awaitQuietly(release);
+                  }
+                  return "LOCAL-" + local;
+                },
+                executor,
+                () -> {}));
+
+    assertTrue(secondFinished.await(5, TimeUnit.SECONDS));
+    assertEquals(Set.of("LOCAL-1", "LOCAL-2"), rolledBack);
+    assertTrue(late.isEmpty());
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
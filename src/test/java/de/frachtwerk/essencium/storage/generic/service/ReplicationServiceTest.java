@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
+import de.frachtwerk.essencium.storage.impl.identity.model.IdentityFile;
+import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
+import de.frachtwerk.essencium.storage.impl.identity.provider.local.LocalIdentityStorageInfo;
+import de.frachtwerk.essencium.storage.impl.identity.provider.s3.S3IdentityStorageInfo;
+import de.frachtwerk.essencium.storage.impl.identity.repository.IdentityFileRepository;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicationServiceTest {
+  @Mock private IdentityFileRepository repository;
+  @Mock private StorageServiceDispatcher<IdentityFile, Long, IdentityStorageInfo> dispatcher;
+  @Mock private PlatformTransactionManager transactionManager;
+  private final FileStorageConfiguration config = new FileStorageConfiguration();
+  private ReplicationService<IdentityFile, Long, IdentityStorageInfo> service;
+
+  private IdentityFile file;
+  private LocalIdentityStorageInfo source;
+  private S3IdentityStorageInfo pending;
+
+  @BeforeEach
+  void setUp() {
+    service =
+        new ReplicationService<>(
+            repository, dispatcher, config, new TransactionTemplate(transactionManager));
+    file = new IdentityFile();
+    file.setId(1L);
+    file.setSize(7);
+    file.setMimeType("text/plain");
+    source = new LocalIdentityStorageInfo(file, "/files/a");
+    source.setId(10L);
+    source.setAvailable(true);
+    pending = new S3IdentityStorageInfo(file, "key");
+    pending.setId(11L);
+    pending.setAvailable(false);
+    pending.setPending(true);
+    file.setStorageInfos(List.of(source, pending));
+    when(repository.findWithDueReplicas(
+            any(Instant.class), eq(Limit.of(config.getReplicationBatchSize()))))
+        .thenReturn(List.of(file));
+    lenient().when(repository.findForUpdateById(1L)).thenReturn(Optional.of(file));
+    lenient()
+        .when(dispatcher.loadFile(source))
+        .thenAnswer(
+            invocationOnMock -> {
+              source.setContent(new ByteArrayResource("content".getBytes()));
+              return source;
+            });
+  }
+
+  @Test
+  @DisplayName("Write pending replicas from an available replica")
+  void replicate() throws IOException {
+    doAnswer(
+            invocationOnMock -> {
+              pending.setPending(false);
+              pending.setAvailable(true);
+              return null;
+            })
+        .when(dispatcher)
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+
+    service.replicatePending();
+
+    verify(dispatcher, times(1))
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+    assertFalse(pending.isPending());
+    assertTrue(pending.isAvailable());
+    assertNull(pending.getNextReplicationAttempt());
+    verify(repository, never()).save(any(IdentityFile.class));
+    verify(dispatcher, never()).deleteFile(any());
+  }
+
+  @Test
+  @DisplayName("Claim replicas for the maximum retry delay while they are written")
+  void lease() throws IOException {
+    config.setReplicationMaxRetryDelay(Duration.ofHours(1));
+    Instant start = Instant.now();
+    List<Instant> leases = new ArrayList<>();
+    doAnswer(
+            invocationOnMock -> {
+              leases.add(pending.getNextReplicationAttempt());
+              return null;
+            })
+        .when(dispatcher)
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+
+    service.replicatePending();
+
+    assertEquals(1, leases.size());
+    assertFalse(leases.getFirst().isBefore(start.plus(Duration.ofHours(1))));
+  }
+
+  @Test
+  @DisplayName("Retry a failed replica only after the retry delay")
+  void retryDelay() throws IOException {
+    config.setReplicationRetryDelay(Duration.ofHours(1));
+    config.setReplicationMaxRetryDelay(Duration.ofHours(2));
+    doThrow(new IOException("S3 is down"))
+        .when(dispatcher)
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+
+    Instant start = Instant.now();
+    service.replicatePending();
+    service.replicatePending();
+
+    verify(dispatcher, times(1))
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+    assertTrue(pending.isPending());
+    assertEquals(1, pending.getReplicationAttempts());
+    assertFalse(pending.getNextReplicationAttempt().isBefore(start.plus(Duration.ofHours(1))));
+  }
+
+  @Test
+  @DisplayName("Retry a failed replica immediately after the retry delay has passed")
+  void retryAfterDelay() throws IOException {
+    config.setReplicationRetryDelay(Duration.ZERO);
+    doThrow(new IOException("S3 is down"))
+        .when(dispatcher)
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+
+    service.replicatePending();
+    service.replicatePending();
+
+    verify(dispatcher, times(2))
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+    assertEquals(2, pending.getReplicationAttempts());
+  }
+
+  @Test
+  @DisplayName("Back off replicas without an available source")
+  void noSource() throws IOException {
+    source.setAvailable(false);
+
+    service.replicatePending();
+
+    verify(dispatcher, never()).writeReplica(any(), any(), any(), anyLong());
+    assertEquals(1, pending.getReplicationAttempts());
+    assertTrue(pending.getNextReplicationAttempt().isAfter(Instant.now()));
+  }
+
+  @Test
+  @DisplayName("Delete the written replica if the file has been deleted in the meantime")
+  void deletedFile() throws IOException {
+    when(repository.findForUpdateById(1L)).thenReturn(Optional.empty());
+
+    service.replicatePending();
+
+    verify(dispatcher, times(1))
+        .writeReplica(eq(pending), eq("text/plain"), any(InputStream.class), eq(7L));
+    verify(dispatcher, times(1)).deleteFile(pending);
+  }
+}
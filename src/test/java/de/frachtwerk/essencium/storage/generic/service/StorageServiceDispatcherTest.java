@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import de.frachtwerk.essencium.storage.generic.configuration.FileStorageConfiguration;
+import de.frachtwerk.essencium.storage.generic.model.Providers;
+import de.frachtwerk.essencium.storage.generic.provider.local.AbstractLocalStorageService;
+import de.frachtwerk.essencium.storage.generic.provider.s3.AbstractS3StorageService;
+import de.frachtwerk.essencium.storage.impl.identity.model.IdentityFile;
+import de.frachtwerk.essencium.storage.impl.identity.model.IdentityStorageInfo;
+import de.frachtwerk.essencium.storage.impl.identity.provider.local.LocalIdentityStorageInfo;
+import de.frachtwerk.essencium.storage.impl.identity.provider.s3.S3IdentityStorageInfo;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class StorageServiceDispatcherTest {
+  private static final byte[] CONTENT = "content".getBytes();
+
+  @Mock private AbstractLocalStorageService<IdentityFile, Long, IdentityStorageInfo> local;
+  @Mock private AbstractS3StorageService<IdentityFile, Long, IdentityStorageInfo> s3;
+  private final FileStorageConfiguration config = new FileStorageConfiguration();
+  private StorageServiceDispatcher<IdentityFile, Long, IdentityStorageInfo> dispatcher;
+
+  @BeforeEach
+  void setUp() {
+    config.setUsedProviders(new LinkedHashSet<>(List.of(Providers.LOCAL, Providers.S3)));
+    config.setWriteBehind(true);
+    dispatcher = new StorageServiceDispatcher<>(local, s3, config);
+  }
+
+  @Test
+  @DisplayName("Write-behind stores the first provider and prepares the others as pending")
+  void writeBehind() throws IOException {
+    LocalIdentityStorageInfo written = new LocalIdentityStorageInfo(null, "/files/a");
+    S3IdentityStorageInfo prepared = new S3IdentityStorageInfo(null, "key");
+    prepared.setPending(true);
+    when(local.saveFile("name", "text/plain", CONTENT)).thenReturn(written);
+    when(s3.prepareReplica("name")).thenReturn(prepared);
+
+    List<IdentityStorageInfo> infos = dispatcher.saveFile("name", "text/plain", CONTENT);
+
+    assertEquals(List.of(written, prepared), infos);
+    verify(s3, never()).saveFile("name", "text/plain", CONTENT);
+  }
+
+  @Test
+  @DisplayName("Write-behind deletes the written file if a replica cannot be prepared")
+  void writeBehindRollback() throws IOException {
+    LocalIdentityStorageInfo written = new LocalIdentityStorageInfo(null, "/files/a");
+    when(local.saveFile("name", "text/plain", CONTENT)).thenReturn(written);
+    when(s3.prepareReplica("name")).thenThrow(new IOException("S3 is down"));
+
+    assertThrows(IOException.class, () -> dispatcher.saveFile("name", "text/plain", CONTENT));
+
+    verify(local).deleteFile(written);
+  }
+
+  @Test
+  @DisplayName("Spool uploads to the configured spool directory")
+  void spoolDirectory(@TempDir Path spoolDirectory) throws IOException {
+    config.setSpoolDirectory(spoolDirectory.toString());
+
+    Path spool = dispatcher.spool(new ByteArrayInputStream(CONTENT), CONTENT.length);
+
+    assertEquals(spoolDirectory, spool.getParent());
+    assertArrayEquals(CONTENT, Files.readAllBytes(spool));
+  }
+
+  @Test
+  @DisplayName("Delete the spool file if the content does not have the announced length")
+  void spoolIncompleteContent(@TempDir Path spoolDirectory) throws IOException {
+    config.setSpoolDirectory(spoolDirectory.toString());
+
+    assertThrows(
+        IOException.class,
+        () -> dispatcher.spool(new ByteArrayInputStream(CONTENT), CONTENT.length + 1));
+
+    try (Stream<Path> files = Files.list(spoolDirectory)) {
+      assertEquals(0, files.count());
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.storage.generic.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class UniqueNameCreatorTest {
+  private final UniqueNameCreator creator = new UniqueNameCreator();
+
+  @Test
+  @DisplayName("Keep the original name if it is free")
+  void originalName() {
+    assertEquals("scan.pdf", creator.getUniqueName("scan.pdf", name -> false));
+  }
+
+  @Test
+  @DisplayName("Append the lowest free suffix before the extension")
+  void suffix() {
+    Set<String> existing = Set.of("scan.pdf", "scan_1.pdf", "scan_2.pdf", "notes", "notes_1");
+
+    assertEquals("scan_3.pdf", creator.getUniqueName("scan.pdf", existing::contains));
+    assertEquals("notes_2", creator.getUniqueName("notes", existing::contains));
+  }
+
+  @Test
+  @DisplayName("Test a logarithmic number of names")
+  void logarithmicLookups() {
+    Set<String> existing = new HashSet<>();
+    existing.add("scan.pdf");
+    for (int i = 1; i < 5000; i++) {
+      existing.add("scan_" + i + ".pdf");
+    }
+    AtomicInteger lookups = new AtomicInteger();
+
+    String name =
+        creator.getUniqueName(
+            "scan.pdf",
+            candidate -> {
+              lookups.incrementAndGet();
+              return existing.contains(candidate);
+            });
+
+    assertEquals("scan_5000.pdf", name);
+    assertTrue(lookups.get() < 40, lookups + " lookups");
+  }
+
+  @Test
+  @DisplayName("Reserve consecutive names without searching again")
+  void reserveIndexed() throws Exception {
+    Set<String> reserved = new HashSet<>();
+    AtomicInteger lookups = new AtomicInteger();
+
+    for (int i = 0; i < 100; i++) {
+      creator.reserveUniqueName(
+          "scan.pdf",
+          candidate -> {
+            lookups.incrementAndGet();
+            return reserved.contains(candidate);
+          },
+          reserved::add);
+    }
+
+    assertEquals(100, reserved.size());
+    assertTrue(reserved.contains("scan.pdf"));
+    assertTrue(reserved.contains("scan_99.pdf"));
+    assertEquals(1, lookups.get());
+  }
+
+  @Test
+  @DisplayName("Concurrent reservations never return the same name")
+  void reserveConcurrently() throws Exception {
+    Set<String> reserved = ConcurrentHashMap.newKeySet();
+    int threads = 16;
+    int perThread = 200;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<List<String>>> futures = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  List<String> names = new ArrayList<>();
+                  for (int i = 0; i < perThread; i++) {
+                    names.add(
+                        creator.reserveUniqueName("scan.pdf", reserved::contains, reserved::add));
+                  }
+                  return names;
+                }));
+      }
+      start.countDown();
+
+      Set<String> returned = new HashSet<>();
+      for (Future<List<String>> future : futures) {
+        for (String name : future.get()) {
+          assertTrue(returned.add(name), name + " was returned twice");
+        }
+      }
+      assertEquals(threads * perThread, returned.size());
+      assertEquals(reserved, returned);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.backend.test.integration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import de.frachtwerk.essencium.storage.generic.service.FileService;
+import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceFile;
+import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceStorageInfo;
+import de.frachtwerk.essencium.storage.impl.sequence.provider.s3.S3SequenceStorageInfo;
+import de.frachtwerk.essencium.storage.impl.sequence.repository.SequenceFileRepository;
+import jakarta.persistence.EntityManagerFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MinIOContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/** Verifies that listing files does not load the storage infos of each file separately. */
+@Testcontainers
+@SpringBootTest(classes = IntegrationTestApplication.class)
+public class FileListingIntegrationTest {
+  private static final int FILE_COUNT = 500;
+
+  @Container
+  static final MinIOContainer MINIO =
+      new MinIOContainer("minio/minio:latest").withUserName("minio").withPassword("minio123");
+
+  @Container
+  static final PostgreSQLContainer<?> POSTGRES_CONTAINER = new PostgreSQLContainer<>("postgres:17");
+
+  @DynamicPropertySource
+  static void configure(DynamicPropertyRegistry registry) {
+    if (!POSTGRES_CONTAINER.isRunning()) {
+      POSTGRES_CONTAINER.withMinimumRunningDuration(Duration.ofSeconds(5)).start();
+    }
+    registry.add("spring.datasource.url", POSTGRES_CONTAINER::getJdbcUrl);
+    registry.add("spring.datasource.username", POSTGRES_CONTAINER::getUsername);
+    registry.add("spring.datasource.password", POSTGRES_CONTAINER::getPassword);
+    registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+
+    if (!MINIO.isRunning()) {
+      MINIO.start();
+    }
+    registry.add("file.enabled", () -> "true");
+    registry.add("file.storage.usedProviders", () -> "s3");
+    registry.add("file.storage.s3.active", () -> "true");
+    registry.add("file.storage.s3.endpointUrl", MINIO::getS3URL);
+    registry.add("file.storage.s3.accessKey", MINIO::getUserName);
+    registry.add("file.storage.s3.secretKey", MINIO::getPassword);
+    registry.add("file.storage.s3.bucketName", () -> "bucket");
+    registry.add("file.storage.s3.region", () -> "local");
+  }
+
+  private final FileService<SequenceFile, Long, SequenceStorageInfo> fileService;
+  private final SequenceFileRepository sequenceFileRepository;
+  private final TransactionTemplate transactionTemplate;
+  private final Statistics statistics;
+
+  @Autowired
+  public FileListingIntegrationTest(
+      FileService<SequenceFile, Long, SequenceStorageInfo> fileService,
+      SequenceFileRepository sequenceFileRepository,
+      TransactionTemplate transactionTemplate,
+      EntityManagerFactory entityManagerFactory) {
+    this.fileService = fileService;
+    this.sequenceFileRepository = sequenceFileRepository;
+    this.transactionTemplate = transactionTemplate;
+    this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+  }
+
+  @BeforeEach
+  void setUp() {
+    if (sequenceFileRepository.count() < FILE_COUNT) {
+      sequenceFileRepository.saveAll(
+          IntStream.range(0, FILE_COUNT)
+              .mapToObj(
+                  i -> {
+                    SequenceFile file =
+                        new SequenceFile(new ArrayList<>(), "file-" + i + ".txt", 1, "text/plain");
+                    file.getStorageInfos().add(new S3SequenceStorageInfo(file, "key-" + i));
+                    return file;
+                  })
+              .toList());
+    }
+    statistics.clear();
+  }
+
+  @Test
+  void testGetAllUsesSingleStatement() {
+    List<SequenceFile> files = fileService.getAll();
+
+    assertTrue(files.size() >= FILE_COUNT);
+    files.forEach(file -> assertFalse(file.getStorageInfos().isEmpty()));
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void testGetAllFilteredUsesSingleStatement() {
+    List<SequenceFile> files =
+        fileService.getAllFiltered((root, query, cb) -> cb.like(root.get("name"), "file-%"));
+
+    assertTrue(files.size() >= FILE_COUNT);
+    files.forEach(file -> assertFalse(file.getStorageInfos().isEmpty()));
+    assertEquals(1, statistics.getPrepareStatementCount());
+  }
+
+  @Test
+  void testGetPageLoadsStorageInfosInBatches() {
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          Page<SequenceFile> page =
+              fileService.getAll(PageRequest.of(0, FILE_COUNT, Sort.by("id")));
+
+          assertEquals(FILE_COUNT, page.getNumberOfElements());
+          page.forEach(file -> assertFalse(file.getStorageInfos().isEmpty()));
+        });
+    // page, count and one statement per batch of 100 storage info collections
+    assertEquals(2 + FILE_COUNT / 100, statistics.getPrepareStatementCount());
+  }
+}
@@ -32,13 +32,17 @@ import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceFile;
 import de.frachtwerk.essencium.storage.impl.sequence.provider.s3.S3SequenceStorageInfo;
 import de.frachtwerk.essencium.storage.impl.sequence.repository.SequenceFileRepository;
 import io.minio.BucketExistsArgs;
+import io.minio.GetObjectArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.StatObjectArgs;
 import io.minio.StatObjectResponse;
 import io.minio.errors.ErrorResponseException;
+import java.io.InputStream;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -94,6 +98,12 @@ public class FileOperationIntegrationTest {
     registry.add("file.storage.s3.secretKey", MINIO::getPassword);
     registry.add("file.storage.s3.bucketName", () -> BUCKET_NAME);
     registry.add("file.storage.s3.region", () -> "local");
+    // S3 accepts parts of at least 5MB, except for the last one
+    registry.add("file.storage.s3.multipartThreshold", () -> "5MB");
+    registry.add("file.storage.s3.multipartPartSize", () -> "5MB");
+    registry.add("file.storage.s3.parallelDownload", () -> "true");
+    registry.add("file.storage.s3.parallelDownloadThreshold", () -> "5MB");
+    registry.add("file.storage.s3.downloadPartSize", () -> "1MB");
   }
 
   private final WebApplicationContext webApplicationContext;
@@ -191,10 +201,82 @@ public class FileOperationIntegrationTest {
             StatObjectArgs.builder().bucket(BUCKET_NAME).object(fileKey).build());
     // Verify the file exists in MinIO
     assertNotNull(statObjectResponse);
-    assertEquals("application/octet-stream", statObjectResponse.contentType());
+    assertEquals("text/plain", statObjectResponse.contentType());
     assertEquals(20, statObjectResponse.size());
   }
 
+  @Test
+  void testUploadLargeFile() throws Exception {
+    byte[] content = randomBytes(12 * 1024 * 1024);
+    MockMultipartFile file =
+        new MockMultipartFile("file", "large.bin", "application/octet-stream", content);
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                multipart("/v1/files")
+                    .file(file)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .param("name", "large.bin"))
+            .andExpect(status().isOk())
+            .andExpect(MockMvcResultMatchers.jsonPath("$.size").value(content.length))
+            .andReturn();
+
+    String responseJson = result.getResponse().getContentAsString();
+    String fileKey = objectMapper.readTree(responseJson).at("/storageInfos/0/s3ObjectKey").asText();
+
+    // multipart uploads have an ETag of the form <hash>-<number of parts>
+    StatObjectResponse statObjectResponse =
+        minioClient.statObject(
+            StatObjectArgs.builder().bucket(BUCKET_NAME).object(fileKey).build());
+    assertEquals(content.length, statObjectResponse.size());
+    assertTrue(statObjectResponse.etag().endsWith("-3"));
+    try (InputStream in =
+        minioClient.getObject(
+            GetObjectArgs.builder().bucket(BUCKET_NAME).object(fileKey).build())) {
+      assertArrayEquals(content, in.readAllBytes());
+    }
+  }
+
+  @Test
+  void testDownloadLargeFile() throws Exception {
+    byte[] content = randomBytes(12 * 1024 * 1024 + 17);
+    MockMultipartFile file =
+        new MockMultipartFile("file", "large.bin", "application/octet-stream", content);
+    String responseJson =
+        mockMvc
+            .perform(
+                multipart("/v1/files")
+                    .file(file)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .param("name", "large.bin"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    long id = objectMapper.readTree(responseJson).get("id").asLong();
+
+    // fetched as parallel range requests of 1MB that are reassembled in order
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/v1/files/{id}", id)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+            .andExpect(status().isOk())
+            .andReturn();
+    assertArrayEquals(content, result.getResponse().getContentAsByteArray());
+
+    mockMvc
+        .perform(
+            get("/v1/files/{id}", id)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .header(HttpHeaders.RANGE, "bytes=1048570-1048585"))
+        .andExpect(status().isPartialContent())
+        .andExpect(content().bytes(Arrays.copyOfRange(content, 1048570, 1048586)));
+  }
+
   @Test
   void testDownloadFile() throws Exception {
     SequenceFile testFile = testUtil.createTestFile(BUCKET_NAME, minioClient);
@@ -213,6 +295,34 @@ public class FileOperationIntegrationTest {
         .andExpect(content().bytes("This is a test file for download.".getBytes()));
   }
 
+  @Test
+  void testDownloadFileRange() throws Exception {
+    SequenceFile testFile = testUtil.createTestFile(BUCKET_NAME, minioClient);
+
+    mockMvc
+        .perform(
+            get("/v1/files/{id}", testFile.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .header(HttpHeaders.RANGE, "bytes=10-13"))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-13/33"))
+        .andExpect(content().bytes("test".getBytes()));
+  }
+
+  @Test
+  void testDownloadFileUnsatisfiableRange() throws Exception {
+    SequenceFile testFile = testUtil.createTestFile(BUCKET_NAME, minioClient);
+
+    mockMvc
+        .perform(
+            get("/v1/files/{id}", testFile.getId())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .header(HttpHeaders.RANGE, "bytes=100-"))
+        .andExpect(status().isRequestedRangeNotSatisfiable())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */33"));
+  }
+
   @Test
   void testDeleteFile() throws Exception {
     SequenceFile testFile = testUtil.createTestFile(BUCKET_NAME, minioClient);
@@ -239,4 +349,10 @@ public class FileOperationIntegrationTest {
                     StatObjectArgs.builder().bucket(BUCKET_NAME).object(fileKey).build()));
     assertEquals("Object does not exist", exception.getMessage());
   }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
 }
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2025 Frachtwerk GmbH, Leopoldstraße 7C, 76133 Karlsruhe.
+ *
+ * This file is part of essencium-backend.
+ *
+ * essencium-backend is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * essencium-backend is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with essencium-backend. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.frachtwerk.essencium.backend.test.integration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.frachtwerk.essencium.backend.model.dto.LoginRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+@Testcontainers
+@SpringBootTest(
+    classes = IntegrationTestApplication.class,
+    webEnvironment = SpringBootTest.WebEnvironment.MOCK)
+@AutoConfigureMockMvc
+public class LocalFileIntegrationTest {
+  private static final String SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String START = "org.apache.tomcat.sendfile.start";
+  private static final String END = "org.apache.tomcat.sendfile.end";
+  private static final byte[] CONTENT = "This is a test file for download.".getBytes();
+
+  @Container
+  static final PostgreSQLContainer<?> POSTGRES_CONTAINER = new PostgreSQLContainer<>("postgres:17");
+
+  private static final Path STORAGE_PATH;
+
+  static {
+    try {
+      STORAGE_PATH = Files.createTempDirectory("essencium-local");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @DynamicPropertySource
+  static void configure(DynamicPropertyRegistry registry) {
+    if (!POSTGRES_CONTAINER.isRunning()) {
+      POSTGRES_CONTAINER.withMinimumRunningDuration(Duration.ofSeconds(5)).start();
+    }
+    registry.add("spring.datasource.url", POSTGRES_CONTAINER::getJdbcUrl);
+    registry.add("spring.datasource.username", POSTGRES_CONTAINER::getUsername);
+    registry.add("spring.datasource.password", POSTGRES_CONTAINER::getPassword);
+
+    registry.add("file.enabled", () -> "true");
+    registry.add("file.storage.usedProviders", () -> "local");
+    registry.add("file.storage.local.active", () -> "true");
+    registry.add("file.storage.local.path", STORAGE_PATH::toString);
+  }
+
+  private final MockMvc mockMvc;
+  private final ObjectMapper objectMapper;
+
+  private String accessToken;
+
+  @Autowired
+  public LocalFileIntegrationTest(MockMvc mockMvc, ObjectMapper objectMapper) {
+    this.mockMvc = mockMvc;
+    this.objectMapper = objectMapper;
+  }
+
+  @BeforeEach
+  void setUp() throws Exception {
+    if (accessToken == null) {
+      LoginRequest loginRequest = new LoginRequest("devnull@frachtwerk.de", "adminAdminAdmin");
+      String response =
+          mockMvc
+              .perform(
+                  post("/auth/token")
+                      .header("user-agent", "JUnit")
+                      .content(objectMapper.writeValueAsString(loginRequest))
+                      .contentType(MediaType.APPLICATION_JSON_VALUE)
+                      .accept(MediaType.APPLICATION_JSON))
+              .andExpect(status().isOk())
+              .andReturn()
+              .getResponse()
+              .getContentAsString();
+      accessToken = objectMapper.readTree(response).get("token").asText();
+    }
+  }
+
+  @Test
+  void testDownloadFileWithSendfile() throws Exception {
+    JsonNode file = upload();
+    String path = Path.of(file.at("/storageInfos/0/path").asText()).toAbsolutePath().toString();
+
+    mockMvc
+        .perform(
+            get("/v1/files/{id}", file.get("id").asLong())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .requestAttr(SUPPORT, true))
+        .andExpect(status().isOk())
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, CONTENT.length))
+        .andExpect(request().attribute(FILENAME, path))
+        .andExpect(request().attribute(START, 0L))
+        .andExpect(request().attribute(END, (long) CONTENT.length))
+        .andExpect(content().bytes(new byte[0]));
+  }
+
+  @Test
+  void testDownloadFileRangeWithSendfile() throws Exception {
+    JsonNode file = upload();
+
+    mockMvc
+        .perform(
+            get("/v1/files/{id}", file.get("id").asLong())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                .header(HttpHeaders.RANGE, "bytes=10-13")
+                .requestAttr(SUPPORT, true))
+        .andExpect(status().isPartialContent())
+        .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 10-13/33"))
+        .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+        .andExpect(request().attribute(START, 10L))
+        .andExpect(request().attribute(END, 14L))
+        .andExpect(content().bytes(new byte[0]));
+  }
+
+  @Test
+  void testDownloadFileWithoutSendfileSupport() throws Exception {
+    JsonNode file = upload();
+
+    mockMvc
+        .perform(
+            get("/v1/files/{id}", file.get("id").asLong())
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken))
+        .andExpect(status().isOk())
+        .andExpect(request().attribute(FILENAME, (Object) null))
+        .andExpect(content().bytes(CONTENT));
+  }
+
+  private JsonNode upload() throws Exception {
+    JsonNode file =
+        objectMapper.readTree(
+            mockMvc
+                .perform(
+                    multipart("/v1/files")
+                        .file(new MockMultipartFile("file", "test.txt", "text/plain", CONTENT))
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + accessToken)
+                        .param("name", "test.txt"))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString());
+    assertEquals(CONTENT.length, Files.size(Path.of(file.at("/storageInfos/0/path").asText())));
+    return file;
+  }
+}
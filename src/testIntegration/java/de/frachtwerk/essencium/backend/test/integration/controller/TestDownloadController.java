@@ -24,15 +24,18 @@ import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceFile;
 import de.frachtwerk.essencium.storage.impl.sequence.model.SequenceStorageInfo;
 import de.frachtwerk.essencium.storage.impl.sequence.service.DefaultSequenceFileService;
 import jakarta.validation.constraints.NotNull;
+import java.io.InputStream;
 import java.util.Optional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -60,13 +63,16 @@ public class TestDownloadController {
       @RequestParam final MultipartFile file)
       throws Exception {
     String type = Optional.ofNullable(file.getContentType()).orElse(mimeType);
-    return sequenceFileService.storeFile(name, type, file.getBytes());
+    try (InputStream content = file.getInputStream()) {
+      return sequenceFileService.storeFile(name, type, content, file.getSize());
+    }
   }
 
   @GetMapping("/{id}")
-  public @NotNull @NotNull ResponseEntity<Resource> getTestFile(@PathVariable Long id) {
+  public @NotNull @NotNull ResponseEntity<Resource> getTestFile(
+      @PathVariable Long id, @RequestHeader HttpHeaders headers) {
     SequenceFile sequenceFile = sequenceFileService.loadFile(id).orElseThrow();
-    return downloadEndpoint.prepareResponse(sequenceFile);
+    return downloadEndpoint.prepareResponse(sequenceFile, headers);
   }
 
   @DeleteMapping("/{id}")